@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for BotBlock that answers every request with the same body after a fixed delay.
+ * <br>The answers are sent from a timer instead of a thread per request, so the server adds only a few threads
+ * no matter how many requests are waiting. That keeps the thread and memory numbers of the benchmarks about the client.
+ */
+class DelayedServer implements Closeable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicInteger receivedRequests = new AtomicInteger();
+    private final AtomicInteger answeredRequests = new AtomicInteger();
+
+    /**
+     * @param body
+     *        The body every request is answered with.
+     * @param delayMillis
+     *        The milliseconds to wait before answering.
+     *
+     * @throws IOException
+     *         If the server can't be started.
+     */
+    DelayedServer(String body, long delayMillis) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        server.createContext("/", exchange -> {
+            receivedRequests.incrementAndGet();
+            readFully(exchange);
+            timer.schedule(() -> {
+                respond(exchange, bytes);
+                answeredRequests.incrementAndGet();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return The base URL of the server, for example {@code http://127.0.0.1:12345/api/}.
+     */
+    String getBaseURL(){
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/api/";
+    }
+
+    /**
+     * @return The amount of request body bytes received so far, as they were sent (so still gzipped).
+     */
+    long getReceivedBytes(){
+        return receivedBytes.get();
+    }
+
+    /**
+     * @return The amount of requests received so far.
+     */
+    int getReceivedRequests(){
+        return receivedRequests.get();
+    }
+
+    /**
+     * @return The amount of requests answered so far.
+     */
+    int getAnsweredRequests(){
+        return answeredRequests.get();
+    }
+
+    private void readFully(HttpExchange exchange) throws IOException{
+        try(InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                receivedBytes.addAndGet(read);
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body){
+        try(OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            out.write(body);
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close(){
+        server.stop(0);
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import okhttp3.RequestBody;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the request body size with and without gzip and the CPU time gzip takes, for different shard counts.
+ * <br>The bodies are posted through {@link com.nathanwebb.botblock4j.BotBlockRequests BotBlockRequests} to a local
+ * stand-in for BotBlock, which counts the bytes it receives.
+ * <br>Arguments: {@code [amount of list tokens, default 30] [shard counts, default 1 10 100 500 1000 2000 5000 10000 50000]}.
+ */
+public class GzipBenchmark {
+    private static final String RESPONSE = "{\"success\":{\"botblock.org\":[200,\"{}\"]},\"failure\":[]}";
+    private static final int CPU_ITERATIONS = 200;
+
+    public static void main(String[] args) throws Throwable{
+        int tokens = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        int[] shardCounts = {1, 10, 100, 500, 1000, 2000, 5000, 10000, 50000};
+        if(args.length > 1){
+            shardCounts = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                shardCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        BlockAuth.Builder authBuilder = new BlockAuth.Builder();
+        for(int i = 0; i < tokens; i++){
+            authBuilder.addListAuthToken("list" + i + ".org", "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.token" + i);
+        }
+        BlockAuth auth = authBuilder.build();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        try(DelayedServer server = new DelayedServer(RESPONSE, 0)) {
+            BotBlockRequests.setBaseURLs(server.getBaseURL());
+            System.out.println("Java " + System.getProperty("java.version") + ", " + tokens + " list tokens");
+            System.out.printf("%8s %12s %12s %7s %14s%n", "shards", "plain bytes", "gzip bytes", "ratio", "gzip cpu (us)");
+
+            for(int shards : shardCounts){
+                JSONObject data = guildData(shards);
+                auth.getAuthHashMap().forEach(data::put);
+                RequestBody body = RequestBody.create(null, data.toString());
+
+                long plain = postedBytes(server, 0, shards, auth);
+                long gzipped = postedBytes(server, 1, shards, auth);
+
+                for(int i = 0; i < CPU_ITERATIONS / 4; i++){
+                    GzipRequestInterceptor.gzip(body);
+                }
+                long start = threads.getCurrentThreadCpuTime();
+                for(int i = 0; i < CPU_ITERATIONS; i++){
+                    GzipRequestInterceptor.gzip(body);
+                }
+                double micros = (threads.getCurrentThreadCpuTime() - start) / 1000.0 / CPU_ITERATIONS;
+
+                System.out.printf("%8d %12d %12d %6.2f %14.1f%n", shards, plain, gzipped, (double) gzipped / plain, micros);
+            }
+        }
+    }
+
+    /**
+     * Posts the guild counts once and returns how many body bytes the server received.
+     */
+    private static long postedBytes(DelayedServer server, long threshold, int shards, BlockAuth auth) throws Throwable{
+        BotBlockRequests.setGzipThreshold(threshold);
+        long before = server.getReceivedBytes();
+        BotBlockRequests.postGuilds(guildData(shards), auth);
+        return server.getReceivedBytes() - before;
+    }
+
+    /**
+     * Creates the same data as {@link BotBlockRequests#guildData(net.dv8tion.jda.bot.sharding.ShardManager)}
+     * with realistic guild counts of about 1000 per shard.
+     */
+    private static JSONObject guildData(int shards){
+        Random random = new Random(shards);
+        List<Integer> shardGuildCounts = new ArrayList<>();
+        int total = 0;
+        for(int i = 0; i < shards; i++){
+            int guilds = 900 + random.nextInt(200);
+            shardGuildCounts.add(guilds);
+            total += guilds;
+        }
+
+        JSONObject data = new JSONObject();
+        data.put("server_count", total);
+        data.put("bot_id", "123456789012345678");
+        data.put("shard_count", shards);
+        data.put("shards", new JSONArray(shardGuildCounts));
+        return data;
+    }
+}
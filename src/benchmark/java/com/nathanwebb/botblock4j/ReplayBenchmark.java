@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import com.nathanwebb.botblock4j.replay.RecordedExchange;
+import com.nathanwebb.botblock4j.replay.ReplayServer;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays a recording of the {@link com.nathanwebb.botblock4j.replay.RecordingInterceptor RecordingInterceptor} back
+ * against the current client: every recorded post is sent again at its recorded time, and the
+ * {@link com.nathanwebb.botblock4j.replay.ReplayServer ReplayServer} answers with the recorded responses and timings.
+ * <br>Posts to BotBlock go through {@link com.nathanwebb.botblock4j.BotBlockRequests BotBlockRequests} with the
+ * recorded base URLs, so endpoint selection, failover and gzip are part of the measurement. A request that followed a
+ * failed one to another base URL within {@value #FAILOVER_GAP_MILLIS}ms is taken as its failover and not sent again
+ * on its own. Other requests, for example to the lists in direct mode, are sent as they are through the client for the lists.
+ * <br>The request bodies have the recorded size, but not the recorded content.
+ * <br>Arguments: {@code <recording> [speed, default 1]}. A speed of 2 plays the recording back twice as fast.
+ */
+public class ReplayBenchmark {
+    static final long FAILOVER_GAP_MILLIS = 100;
+    private static final BlockAuth AUTH = new BlockAuth.Builder().addListAuthToken("lbots.org", "token").build();
+
+    public static void main(String[] args) throws Throwable{
+        if(args.length < 1)
+            throw new IllegalArgumentException("The path of the recording is missing.");
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+
+        List<RecordedExchange> exchanges = new ArrayList<>(RecordedExchange.readAll(Paths.get(args[0])));
+        exchanges.sort(Comparator.comparingLong(RecordedExchange::getOffsetMillis));
+        List<RecordedExchange> posts = posts(exchanges);
+        Set<String> baseURLs = new LinkedHashSet<>();
+        for(RecordedExchange exchange : exchanges){
+            if(isRelay(exchange))
+                baseURLs.add("https://" + exchange.getHost() + exchange.getPath().substring(0, exchange.getPath().length() - "count".length()));
+        }
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        Map<String, Integer> outcomes = new ConcurrentSkipListMap<>();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong maxLag = new AtomicLong();
+        try(ReplayServer server = new ReplayServer(exchanges)) {
+            if(!baseURLs.isEmpty())
+                BotBlockRequests.setBaseURLs(baseURLs.toArray(new String[0]));
+            BotBlockRequests.addInterceptor(server.interceptor());
+            //Warm up the client with a request that isn't in the recording, so the first post isn't slower than it was.
+            Request warmUp = new Request.Builder().url("https://warm-up.invalid/").build();
+            for(int i = 0; i < 20; i++){
+                BotBlockRequests.getDirectClient().newCall(warmUp).execute().close();
+            }
+            int warmUpRequests = server.getRequestCount();
+            List<Future<?>> futures = new ArrayList<>();
+
+            long start = System.nanoTime();
+            for(RecordedExchange post : posts){
+                long due = start + TimeUnit.MILLISECONDS.toNanos((long) (post.getOffsetMillis() / speed));
+                long wait = due - System.nanoTime();
+                if(wait > 0)
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                futures.add(executor.submit(() -> {
+                    long sent = System.nanoTime();
+                    maxLag.accumulateAndGet(sent - due, Math::max);
+                    String outcome = send(post);
+                    latencies.add(System.nanoTime() - sent);
+                    outcomes.merge(outcome, 1, Integer::sum);
+                }));
+            }
+            for(Future<?> future : futures){
+                future.get();
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            BotBlockRequests.removeInterceptor(server.interceptor());
+
+            RecordedExchange last = exchanges.get(exchanges.size() - 1);
+            System.out.printf("Java %s, %d posts (%d requests) recorded over %d ms, played back at %.1fx%n",
+                    System.getProperty("java.version"), posts.size(), exchanges.size(),
+                    last.getOffsetMillis() + last.getDurationMillis(), speed);
+            System.out.printf("%d ms, %.1f posts/s, %d requests answered, latest start %.1f ms late%n",
+                    millis, posts.size() / (millis / 1000.0), server.getRequestCount() - warmUpRequests, maxLag.get() / 1_000_000.0);
+            System.out.printf("latency p50 %.1f ms, p95 %.1f ms, max %.1f ms%n",
+                    percentile(latencies, 0.5), percentile(latencies, 0.95), percentile(latencies, 1));
+            System.out.println("outcomes " + outcomes);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static boolean isRelay(RecordedExchange exchange){
+        return exchange.getMethod().equals("POST") && exchange.getPath().endsWith("/count");
+    }
+
+    private static boolean failed(RecordedExchange exchange){
+        return (exchange.getError() != null && exchange.getCode() == 0) || exchange.getCode() >= 500;
+    }
+
+    /**
+     * @return The exchanges that started a post, without the failovers of the client.
+     */
+    static List<RecordedExchange> posts(List<RecordedExchange> exchanges){
+        List<RecordedExchange> posts = new ArrayList<>();
+        RecordedExchange previous = null;
+        for(RecordedExchange exchange : exchanges){
+            boolean failover = previous != null && isRelay(exchange) && failed(previous)
+                    && !exchange.getHost().equals(previous.getHost())
+                    && exchange.getOffsetMillis() <= previous.getOffsetMillis() + previous.getDurationMillis() + FAILOVER_GAP_MILLIS;
+            if(!failover)
+                posts.add(exchange);
+            if(isRelay(exchange))
+                previous = exchange;
+        }
+        return posts;
+    }
+
+    /**
+     * Sends the post and returns how it ended: {@code ok}, the status code or the simple name of the exception.
+     */
+    private static String send(RecordedExchange post){
+        try {
+            if(isRelay(post)){
+                BotBlockRequests.postGuilds(guildData(post.getRequestBytes()), AUTH);
+                return "ok";
+            }
+
+            Request.Builder request = new Request.Builder().url("https://" + post.getHost() + post.getPath());
+            if(!post.getMethod().equals("GET"))
+                request.method(post.getMethod(), RequestBody.create(null, new byte[(int) post.getRequestBytes()]));
+            try(Response response = BotBlockRequests.getDirectClient().newCall(request.build()).execute()) {
+                response.body().string();
+                return response.isSuccessful() ? "ok" : String.valueOf(response.code());
+            }
+        } catch (Throwable t) {
+            return t.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Creates guild count data that is about the given size once the token is added.
+     */
+    private static JSONObject guildData(long size){
+        JSONObject data = BotBlockRequests.guildData(1L, 1000);
+        long missing = size - data.toString().length() - new JSONObject(AUTH.getAuthHashMap()).toString().length();
+        if(missing <= 0)
+            return data;
+
+        //every shard adds "1000," to the body
+        JSONArray shards = new JSONArray();
+        for(long i = 0; i < missing / 5; i++){
+            shards.put(1000);
+        }
+        return data.put("shards", shards);
+    }
+
+    private static double percentile(List<Long> nanos, double percentile){
+        if(nanos.isEmpty())
+            return 0;
+
+        List<Long> sorted = new ArrayList<>(nanos);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.SelfUser;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts many {@link com.nathanwebb.botblock4j.BotBlockAPI BotBlockAPI} instances with the shortest update interval
+ * and measures their first round of posts, either with one platform timer thread per instance (like on Java 8) or
+ * with the shared timer and virtual threads of Java 21.
+ * <br>The posts go to a local stand-in for BotBlock that answers after a fixed delay. As the update interval is at
+ * least a minute, every run takes a bit more than a minute.
+ * <br>Arguments: {@code [platform|virtual, default virtual] [bots, default 2000] [response delay in ms, default 200]}.
+ * <br>Run each mode in its own JVM, so the resident memory of one run doesn't show up in the other.
+ * Virtual threads need Java 21 or newer.
+ */
+public class VirtualThreadBenchmark {
+    private static final String RESPONSE = "{\"success\":{\"botblock.org\":[200,\"{}\"]},\"failure\":[]}";
+
+    public static void main(String[] args) throws Throwable{
+        String mode = args.length > 0 ? args[0] : "virtual";
+        int bots = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long delay = args.length > 2 ? Long.parseLong(args[2]) : 200;
+
+        if(!mode.equals("virtual") && !mode.equals("platform"))
+            throw new IllegalArgumentException("The mode must be platform or virtual.");
+        //Has to be set before PostThreads is loaded.
+        System.setProperty("botblock4j.virtualThreads", String.valueOf(mode.equals("virtual")));
+        if(mode.equals("virtual") && !PostThreads.isVirtual()){
+            System.out.println("virtual: needs Java 21 or newer, running on " + System.getProperty("java.version"));
+            return;
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        try(DelayedServer server = new DelayedServer(RESPONSE, delay)) {
+            BotBlockRequests.setBaseURLs(server.getBaseURL());
+            BlockAuth auth = new BlockAuth.Builder().addListAuthToken("botblock.org", "token").build();
+
+            //Warm up the client and the JIT before the bots post.
+            for(int i = 0; i < 50; i++){
+                BotBlockRequests.postGuilds(1L, 100, auth);
+            }
+            System.gc();
+            int threadsBefore = threads.getThreadCount();
+
+            List<BotBlockAPI> apis = new ArrayList<>();
+            for(int i = 0; i < bots; i++){
+                BotBlockAPI api = new BotBlockAPI(fakeJda(String.valueOf(i + 1)), false, auth);
+                api.setUpdateInterval(1);
+                api.startSendingGuildCounts();
+                apis.add(api);
+            }
+            int idleThreads = threads.getThreadCount() - threadsBefore;
+
+            int sent = server.getAnsweredRequests();
+            while(server.getReceivedRequests() == sent) {
+                Thread.sleep(1);
+            }
+            threads.resetPeakThreadCount();
+            long start = System.nanoTime();
+            long peakHeap = 0;
+            long deadline = start + TimeUnit.MINUTES.toNanos(2);
+            while(server.getAnsweredRequests() - sent < bots && System.nanoTime() < deadline) {
+                peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+                Thread.sleep(10);
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            int answered = server.getAnsweredRequests() - sent;
+            for(BotBlockAPI api : apis){
+                api.stopSendingGuildCounts();
+            }
+
+            System.out.printf("Java %s, %s, %d bots, %dms response delay%n",
+                    System.getProperty("java.version"), mode, bots, delay);
+            System.out.printf("%d threads while waiting for the first post%n", idleThreads);
+            System.out.printf("%d ms, %.0f posts/s, %d of %d answered, peak threads %d, peak heap %d MiB, peak RSS %s%n",
+                    millis, answered / (millis / 1000.0), answered, bots, threads.getPeakThreadCount(),
+                    peakHeap / (1024 * 1024), peakResidentMemory());
+        }
+    }
+
+    /**
+     * @return A JDA instance without shards that only knows its bot id and has no guilds.
+     */
+    private static JDA fakeJda(String id){
+        SelfUser selfUser = (SelfUser) Proxy.newProxyInstance(SelfUser.class.getClassLoader(), new Class<?>[]{SelfUser.class},
+                (proxy, method, args) -> method.getName().equals("getId") ? id : null);
+        return (JDA) Proxy.newProxyInstance(JDA.class.getClassLoader(), new Class<?>[]{JDA.class}, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getGuilds":
+                    return Collections.emptyList();
+                case "getSelfUser":
+                    return selfUser;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * @return The peak resident memory of this process, as reported by Linux.
+     */
+    private static String peakResidentMemory(){
+        try {
+            for(String line : Files.readAllLines(Paths.get("/proc/self/status"))){
+                if(line.startsWith("VmHWM:"))
+                    return line.substring("VmHWM:".length()).trim();
+            }
+        } catch (IOException ignored) {
+            //not on Linux
+        }
+        return "unknown";
+    }
+}
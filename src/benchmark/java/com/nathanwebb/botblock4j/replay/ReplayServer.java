@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j.replay;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local HTTP server that answers requests with the responses of a recording, including their original timing.
+ * <br>Requests are matched by method, host and path. Every match gets the next recorded response for that key,
+ * so parallel requests to different lists always get their own responses. After the last one of a key it starts over.
+ * <br>Exchanges that failed without a response are played back by waiting the recorded time and closing the
+ * connection without answering. Exchanges whose body couldn't be read get their status code and then the connection
+ * is closed before the body.
+ * <br>Add {@link #interceptor()} with
+ * {@link com.nathanwebb.botblock4j.BotBlockRequests#addInterceptor(Interceptor) BotBlockRequests.addInterceptor(Interceptor)}
+ * to send all requests to this server.
+ */
+public class ReplayServer implements Closeable {
+    private static final String HOST_HEADER = "X-Replay-Host";
+
+    private final Map<String, List<RecordedExchange>> exchanges = new HashMap<>();
+    private final Map<String, AtomicInteger> next = new HashMap<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Interceptor interceptor = this::redirect;
+
+    /**
+     * Starts the server on a free port of the loopback address.
+     *
+     * @param  exchanges
+     *         The exchanges to play back, see {@link com.nathanwebb.botblock4j.replay.RecordedExchange#readAll(java.nio.file.Path)}.
+     *
+     * @throws IOException
+     *         If the server can't be started.
+     * @throws IllegalArgumentException
+     *         If there are no exchanges.
+     */
+    public ReplayServer(List<RecordedExchange> exchanges) throws IOException{
+        if(exchanges.isEmpty())
+            throw new IllegalArgumentException("Empty exchanges List is not allowed!");
+
+        for(RecordedExchange exchange : exchanges){
+            String key = key(exchange.getMethod(), exchange.getHost(), exchange.getPath());
+            this.exchanges.computeIfAbsent(key, k -> new ArrayList<>()).add(exchange);
+            next.putIfAbsent(key, new AtomicInteger());
+        }
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return An {@link okhttp3.Interceptor Interceptor} that sends every request to this server instead of its
+     *         original host. The original host is passed along to find the matching exchange.
+     */
+    public Interceptor interceptor(){
+        return interceptor;
+    }
+
+    /**
+     * @return The amount of requests that have been received so far.
+     */
+    public int getRequestCount(){
+        return requestCount.get();
+    }
+
+    private static String key(String method, String host, String path){
+        return method + " " + host + path;
+    }
+
+    private okhttp3.Response redirect(Interceptor.Chain chain) throws IOException{
+        Request request = chain.request();
+        HttpUrl url = request.url().newBuilder()
+                .scheme("http")
+                .host(server.getAddress().getHostString())
+                .port(server.getAddress().getPort())
+                .build();
+        return chain.proceed(request.newBuilder()
+                .url(url)
+                .header(HOST_HEADER, request.url().host() + ":" + request.url().port())
+                .build());
+    }
+
+    private void handle(HttpExchange httpExchange) throws IOException{
+        requestCount.incrementAndGet();
+        try(InputStream in = httpExchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            while(in.read(buffer) != -1) {
+                //the request body isn't used, but has to be read before answering
+            }
+        }
+
+        String key = key(httpExchange.getRequestMethod(), httpExchange.getRequestHeaders().getFirst(HOST_HEADER),
+                httpExchange.getRequestURI().getRawPath());
+        List<RecordedExchange> recorded = exchanges.get(key);
+        if(recorded == null){
+            respond(httpExchange, 404, "text/plain", "No recorded exchange for " + key);
+            return;
+        }
+        RecordedExchange exchange = recorded.get(Math.floorMod(next.get(key).getAndIncrement(), recorded.size()));
+
+        try {
+            TimeUnit.MILLISECONDS.sleep(exchange.getDurationMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if(exchange.getError() != null){
+            //closing without sending (all of) the response makes the client fail like it did when recording
+            if(exchange.getCode() > 0){
+                httpExchange.getResponseHeaders().set("Connection", "close");
+                httpExchange.sendResponseHeaders(exchange.getCode(), 1);
+            }
+            httpExchange.close();
+            return;
+        }
+        respond(httpExchange, exchange.getCode(), exchange.getContentType(), exchange.getBody());
+    }
+
+    private static void respond(HttpExchange httpExchange, int code, String contentType, String body) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if(contentType != null)
+            httpExchange.getResponseHeaders().set("Content-Type", contentType);
+        //Every request gets a new connection, so a failed exchange can't make the client retry on a pooled one.
+        httpExchange.getResponseHeaders().set("Connection", "close");
+        httpExchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        try(OutputStream out = httpExchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close(){
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -27,17 +27,20 @@ import net.dv8tion.jda.core.JDA;
 import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Main class that is what users should use to interact with the BotBlock API.
  */
 public class BotBlockAPI {
-    private ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> task;
     private BlockAuth blockAuth = new BlockAuth();
     private ShardManager shardManager;
     private JDA jda;
     private int updateInterval = 30;
+    private boolean directMode = false;
 
 
     public BotBlockAPI(){}
@@ -173,39 +176,85 @@ public class BotBlockAPI {
     }
 
 
+    /**
+     * Sets if the guild counts should be posted directly to each list instead of through BotBlock.
+     * <br>Only lists with a registered {@link com.nathanwebb.botblock4j.ListEndpoint ListEndpoint} are supported.
+     *
+     * @param directMode
+     *        {@code true} to post directly to the lists, {@code false} to post through BotBlock.
+     *
+     * @see com.nathanwebb.botblock4j.DirectRequests
+     */
+    public void setDirectMode(boolean directMode){
+        this.directMode = directMode;
+    }
+
+
     /**
      * Starts the guild counter.
      * <br>The wrapper prioritizes the {@link net.dv8tion.jda.bot.sharding.ShardManager ShardManager} over the
      * {@link net.dv8tion.jda.core.JDA JDA} when both are set.
+     * <br>On Java 21 and newer all instances share one timer thread and each post runs on its own virtual thread.
+     * On older versions every instance has its own timer thread, which also sends the posts.
+     * <br>Either way the timer keeps the JVM running until {@link #stopSendingGuildCounts()} is called.
+     * Calling this method again restarts the guild counter with the current update interval.
      *
      * @throws IllegalStateException
      *         If neither a JDA instance nor a ShardManager are initialized.
      */
-    public void startSendingGuildCounts() throws IllegalStateException{
-        scheduler.scheduleAtFixedRate(() -> {
-            if(shardManager !=null){
-                try {
-                    BotBlockRequests.postGuilds(shardManager, blockAuth);
-                } catch (FailedToSendException | EmptyResponseException | RateLimitedException | IOException e) {
-                    e.printStackTrace();
-                }
-            }else
-            if(jda != null){
+    public synchronized void startSendingGuildCounts() throws IllegalStateException{
+        stopSendingGuildCounts();
+        Runnable tick = () -> {
+            if(shardManager == null && jda == null)
+                throw new IllegalStateException("Neither ShardManager nor JDA instance was provided!");
+
+            PostThreads.execute(() -> {
                 try {
-                    BotBlockRequests.postGuilds(jda, blockAuth);
+                    postGuildCounts();
                 } catch (FailedToSendException | EmptyResponseException | RateLimitedException | IOException e) {
                     e.printStackTrace();
                 }
-            } else {
-                throw new IllegalStateException("Neither ShardManager nor JDA instance was provided!");
-            }
-       }, updateInterval, updateInterval, TimeUnit.MINUTES);
+            });
+        };
+
+        if(PostThreads.isVirtual()){
+            task = PostThreads.scheduleShared(tick, updateInterval, TimeUnit.MINUTES);
+        }else{
+            scheduler = Executors.newScheduledThreadPool(1);
+            task = scheduler.scheduleAtFixedRate(tick, updateInterval, updateInterval, TimeUnit.MINUTES);
+        }
+    }
+
+    private void postGuildCounts() throws FailedToSendException, EmptyResponseException, RateLimitedException, IOException{
+        if(shardManager != null){
+            if(directMode)
+                DirectRequests.postGuilds(shardManager, blockAuth);
+            else
+                BotBlockRequests.postGuilds(shardManager, blockAuth);
+        }else
+        if(jda != null){
+            if(directMode)
+                DirectRequests.postGuilds(jda, blockAuth);
+            else
+                BotBlockRequests.postGuilds(jda, blockAuth);
+        }
     }
 
     /**
      * Shuts down the guild counter.
+     * <br>On Java 21 and newer a post that is still running finishes on its virtual thread. Virtual threads are
+     * daemon threads, so such a post doesn't keep the JVM running.
      */
-    public void stopSendingGuildCounts(){
-        scheduler.shutdown();
+    public synchronized void stopSendingGuildCounts(){
+        if(task == null)
+            return;
+
+        if(scheduler != null){
+            scheduler.shutdown();
+            scheduler = null;
+        }else{
+            PostThreads.cancelShared(task);
+        }
+        task = null;
     }
 }
@@ -31,12 +31,119 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Contains all the methods for interacting with the BotBlock API.
  */
 public class BotBlockRequests {
-    private static String baseURL = "https://botblock.org/api/";
+    //The settings can be changed while the timer of BotBlockAPI is posting, so the fields are volatile
+    //and changes that build on the current clients are made while holding the lock.
+    private static final Object clientLock = new Object();
+    private static volatile EndpointPool endpoints = new EndpointPool(Collections.singletonList("https://botblock.org/api/"));
+    private static final GzipRequestInterceptor gzipInterceptor = new GzipRequestInterceptor(0);
+    //The lists don't say if they accept gzipped bodies, so only requests to BotBlock are gzipped.
+    private static volatile OkHttpClient directClient = new OkHttpClient();
+    private static volatile OkHttpClient client = directClient.newBuilder()
+            .addInterceptor(gzipInterceptor)
+            .build();
+
+    /**
+     * Sets the base URLs of the BotBlock API. Default is {@code https://botblock.org/api/}.
+     * <br>Each request goes to the URL with the lowest smoothed latency and error rate.
+     * If it can't be reached or answers with a server error, the next URL is tried within the same request.
+     *
+     * @param baseURLs
+     *        The base URLs, for example mirrors or your own relay. Routes like {@code count} are appended to them.
+     *
+     * @throws IllegalArgumentException
+     *         If no base URL is given or one of them is null or not a valid http(s) URL.
+     */
+    public static void setBaseURLs(String... baseURLs){
+        if(baseURLs == null || baseURLs.length == 0)
+            throw new IllegalArgumentException("At least one base URL is required.");
+        for(String baseURL : baseURLs){
+            if(baseURL == null || HttpUrl.parse(baseURL) == null)
+                throw new IllegalArgumentException("Invalid base URL: " + baseURL);
+        }
+
+        endpoints = new EndpointPool(Arrays.asList(baseURLs));
+    }
+
+    /**
+     * Sets the connect, read and write timeout of requests to BotBlock. Default is 10 seconds.
+     * <br>When multiple base URLs are set, this is how long a request waits before trying the next one.
+     *
+     * @param timeout
+     *        The timeout.
+     * @param unit
+     *        The {@link java.util.concurrent.TimeUnit TimeUnit} of the timeout.
+     *
+     * @throws IllegalArgumentException
+     *         If the timeout is less than 1.
+     */
+    public static void setTimeout(long timeout, TimeUnit unit){
+        if(timeout < 1)
+            throw new IllegalArgumentException("The timeout must be at least 1.");
+
+        synchronized(clientLock){
+            client = client.newBuilder()
+                    .connectTimeout(timeout, unit)
+                    .readTimeout(timeout, unit)
+                    .writeTimeout(timeout, unit)
+                    .build();
+        }
+    }
+
+    /**
+     * Adds an {@link okhttp3.Interceptor Interceptor} to the clients that are used for all requests,
+     * including the ones of {@link com.nathanwebb.botblock4j.DirectRequests DirectRequests}.
+     * <br>It runs after the gzip compression, so it sees the request as it is sent.
+     *
+     * @param interceptor
+     *        The Interceptor to add, for example a {@link com.nathanwebb.botblock4j.replay.RecordingInterceptor RecordingInterceptor}.
+     */
+    public static void addInterceptor(Interceptor interceptor){
+        synchronized(clientLock){
+            client = client.newBuilder()
+                    .addInterceptor(interceptor)
+                    .build();
+            directClient = directClient.newBuilder()
+                    .addInterceptor(interceptor)
+                    .build();
+        }
+    }
+
+    /**
+     * Removes an {@link okhttp3.Interceptor Interceptor} that was added with {@link #addInterceptor(Interceptor)}.
+     *
+     * @param interceptor
+     *        The Interceptor to remove.
+     */
+    public static void removeInterceptor(Interceptor interceptor){
+        synchronized(clientLock){
+            OkHttpClient.Builder clientBuilder = client.newBuilder();
+            clientBuilder.interceptors().remove(interceptor);
+            client = clientBuilder.build();
+
+            OkHttpClient.Builder directBuilder = directClient.newBuilder();
+            directBuilder.interceptors().remove(interceptor);
+            directClient = directBuilder.build();
+        }
+    }
+
+    /**
+     * Sets the size above which request bodies to BotBlock are sent gzipped. Gzip is disabled by default.
+     * <br>If a server answers a gzipped body with {@code 400}, {@code 415} or {@code 422}, the request is sent again
+     * uncompressed and following requests to that server are no longer gzipped.
+     * Posts made with {@link com.nathanwebb.botblock4j.DirectRequests DirectRequests} are never gzipped.
+     *
+     * @param threshold
+     *        The amount of bytes a body must exceed to be gzipped. 0 or less disables gzip.
+     */
+    public static void setGzipThreshold(long threshold){
+        gzipInterceptor.setThreshold(threshold);
+    }
 
     /**
      * Posts the guild total of the given {@link net.dv8tion.jda.bot.sharding.ShardManager ShardManager}.
@@ -57,31 +164,7 @@ public class BotBlockRequests {
      *         If we are being ratelimited.
      */
     public static void postGuilds(ShardManager shardManager, BlockAuth auth) throws FailedToSendException, EmptyResponseException, RateLimitedException, IOException{
-        String url = baseURL + "count";
-
-        JSONObject data = new JSONObject();
-        data.put("server_count", shardManager.getGuilds().size());
-        data.put("bot_id", shardManager.getShardById(0).getSelfUser().getId());
-        data.put("shard_count", shardManager.getShardsTotal());
-
-        ArrayList<Integer> shardGuildCounts = new ArrayList<>();
-        for(JDA jdaShard : shardManager.getShards()){
-            shardGuildCounts.add(jdaShard.getGuilds().size());
-        }
-        data.put("shards", new JSONArray(Arrays.deepToString(shardGuildCounts.toArray())));
-
-
-        Map<String, String> authHashMap = auth.getAuthHashMap();
-        authHashMap.forEach(data::put);
-
-        RequestBody body = RequestBody.create(null, data.toString());
-        Request request = new Request.Builder()
-                .url(url)
-                .post(body)
-                .addHeader("User-Agent", shardManager.getShardById(0).getSelfUser().getId())
-                .addHeader("Content-Type", "application/json")
-                .build();
-        postGuildRequest(request);
+        postGuilds(guildData(shardManager), auth);
     }
 
     /**
@@ -106,27 +189,7 @@ public class BotBlockRequests {
      *         If we are being ratelimited.
      */
     public static void postGuilds(JDA jda, BlockAuth auth) throws FailedToSendException, EmptyResponseException, RateLimitedException, IOException{
-        String url = baseURL + "count";
-
-        JSONObject data = new JSONObject();
-
-        data.put("server_count", jda.getGuilds().size());
-        data.put("bot_id", jda.getSelfUser().getId());
-        if(jda.getShardInfo() != null){
-            data.put("shard_id", jda.getShardInfo().getShardId());
-            data.put("shard_count", jda.getShardInfo().getShardTotal());
-        }
-        Map<String, String> authHashMap = auth.getAuthHashMap();
-        authHashMap.forEach(data::put);
-
-        RequestBody body = RequestBody.create(null, data.toString());
-        Request request = new Request.Builder()
-                .url(url)
-                .post(body)
-                .addHeader("User-Agent", jda.getSelfUser().getId())
-                .addHeader("Content-Type", "application/json")
-                .build();
-        postGuildRequest(request);
+        postGuilds(guildData(jda), auth);
     }
 
     /**
@@ -181,30 +244,96 @@ public class BotBlockRequests {
      *         If we are being ratelimited.
      */
     public static void postGuilds(long botId, int servers, BlockAuth auth) throws FailedToSendException, EmptyResponseException, RateLimitedException, IOException{
-        String url = baseURL + "count";
-
-        JSONObject data = new JSONObject();
+        postGuilds(guildData(botId, servers), auth);
+    }
 
-        data.put("server_count", servers);
-        data.put("bot_id", Long.toString(botId));
+    /**
+     * Posts the given guild count data together with the tokens of the {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+     * <br>The User Agent is the id of the bot.
+     *
+     * @param data
+     *        The guild count data without any authorization tokens.
+     * @param auth
+     *        An instance of {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+     *
+     * @throws FailedToSendException
+     *         If one or more lists returned errors when posting.
+     * @throws EmptyResponseException
+     *         If BotBlock api does something funny and returns an empty JSON body.
+     * @throws IOException
+     *         If the connection drops/is cancelled.
+     * @throws RateLimitedException
+     *         If we are being ratelimited.
+     */
+    static void postGuilds(JSONObject data, BlockAuth auth) throws FailedToSendException, EmptyResponseException, RateLimitedException, IOException{
         Map<String, String> authHashMap = auth.getAuthHashMap();
         authHashMap.forEach(data::put);
 
         RequestBody body = RequestBody.create(null, data.toString());
-        Request request = new Request.Builder()
-                .url(url)
+        Request.Builder request = new Request.Builder()
                 .post(body)
-                .addHeader("User-Agent", Long.toString(botId))
-                .addHeader("Content-Type", "application/json")
-                .build();
-        postGuildRequest(request);
+                .addHeader("User-Agent", data.getString("bot_id"))
+                .addHeader("Content-Type", "application/json");
+        postGuildRequest("count", request);
     }
 
     /**
-     * This is just some boilerplate code to post the guild count with the given {@link okhttp3.Request Request}.
+     * This is just some boilerplate code to post the guild count with the given {@link okhttp3.Request.Builder Request.Builder}.
+     * <br>The request is sent to the healthiest base URL first. If it can't be reached or answers with a server error,
+     * the next one is tried.
      *
+     * @param path
+     *        The path of the route, relative to the base URL.
      * @param request
-     *        The {@link okhttp3.Request Request} to execute.
+     *        The {@link okhttp3.Request.Builder Request.Builder} to execute, without a URL.
+     *
+     * @throws FailedToSendException
+     *         If one or more lists returned errors when posting.
+     * @throws EmptyResponseException
+     *         If BotBlock api does something funny and returns an empty JSON body.
+     * @throws IOException
+     *         If the connection drops/is cancelled on every base URL.
+     * @throws RateLimitedException
+     *         If we are being ratelimited.
+     */
+    private static void postGuildRequest(String path, Request.Builder request) throws FailedToSendException, EmptyResponseException, RateLimitedException, IOException{
+        List<EndpointPool.Endpoint> ranked = endpoints.ranked();
+        OkHttpClient client = BotBlockRequests.client;
+        IOException lastException = null;
+        for(int i = 0; i < ranked.size(); i++){
+            EndpointPool.Endpoint endpoint = ranked.get(i);
+            boolean last = i == ranked.size() - 1;
+
+            long start = System.nanoTime();
+            Response response;
+            try {
+                response = client.newCall(request.url(endpoint.getBaseURL() + path).build()).execute();
+            } catch (IOException e) {
+                endpoint.recordFailure();
+                lastException = e;
+                continue;
+            }
+
+            if(response.code() >= 500){
+                endpoint.recordFailure();
+                if(!last){
+                    response.close();
+                    continue;
+                }
+            } else {
+                endpoint.recordSuccess(System.nanoTime() - start);
+            }
+            handleResponse(response);
+            return;
+        }
+        throw lastException != null ? lastException : new IOException("No base URL is set.");
+    }
+
+    /**
+     * Checks the {@link okhttp3.Response Response} of BotBlock.
+     *
+     * @param response
+     *        The {@link okhttp3.Response Response} to check.
      *
      * @throws FailedToSendException
      *         If one or more lists returned errors when posting.
@@ -215,8 +344,7 @@ public class BotBlockRequests {
      * @throws RateLimitedException
      *         If we are being ratelimited.
      */
-    private static void postGuildRequest(Request request) throws FailedToSendException, EmptyResponseException, RateLimitedException, IOException{
-        Response response = new OkHttpClient().newCall(request).execute();
+    private static void handleResponse(Response response) throws FailedToSendException, EmptyResponseException, RateLimitedException, IOException{
         ResponseBody responseBody = response.body();
 
         //check to make sure we actually got a response
@@ -225,28 +353,109 @@ public class BotBlockRequests {
             if(response.code() == 429){
                 throw new RateLimitedException(responseMsg);
             }
-            JSONObject responseObject = new JSONObject(responseMsg);
-
-            if(!responseObject.get("failure").toString().equals("[]")) { //if there is a failed server POST attempt
-                JSONObject failures = responseObject.getJSONObject("failure");
-                    List<String> botLists = new ArrayList<>();
-                    for (String listFailureKey : failures.keySet()) {
-                        try{
-                            JSONArray failedListArray = failures.getJSONArray(listFailureKey);
-                            botLists.add("List name: " + listFailureKey + " Error Code: " + failedListArray.getInt(0) + " Error Message: " + failedListArray.getString(1));
-                        }catch(JSONException e){
-                            Map<String, Object> notFound = failures.toMap();
-                            botLists.add("Errors: " + notFound.toString());
-                        }
-                    }
-                    responseBody.close();
-                    throw new FailedToSendException(botLists);
-            }
             responseBody.close();
             response.close();
+            checkFailures(new JSONObject(responseMsg));
         } else {
             response.close();
             throw new EmptyResponseException("Error when sending a request to BotBlock!");
         }
     }
+
+    /**
+     * Checks the {@code failure} part of a BotBlock response.
+     *
+     * @param responseObject
+     *        The response in the format BotBlock returns it.
+     *
+     * @throws FailedToSendException
+     *         If one or more lists returned errors when posting.
+     */
+    static void checkFailures(JSONObject responseObject) throws FailedToSendException{
+        if(!responseObject.get("failure").toString().equals("[]")) { //if there is a failed server POST attempt
+            JSONObject failures = responseObject.getJSONObject("failure");
+            List<String> botLists = new ArrayList<>();
+            for (String listFailureKey : failures.keySet()) {
+                try{
+                    JSONArray failedListArray = failures.getJSONArray(listFailureKey);
+                    botLists.add("List name: " + listFailureKey + " Error Code: " + failedListArray.getInt(0) + " Error Message: " + failedListArray.getString(1));
+                }catch(JSONException e){
+                    Map<String, Object> notFound = failures.toMap();
+                    botLists.add("Errors: " + notFound.toString());
+                }
+            }
+            throw new FailedToSendException(botLists);
+        }
+    }
+
+    /**
+     * Creates the guild count data of the given {@link net.dv8tion.jda.bot.sharding.ShardManager ShardManager}
+     * without any authorization tokens.
+     *
+     * @param shardManager
+     *        An instance of the {@link net.dv8tion.jda.bot.sharding.ShardManager ShardManager}.
+     *
+     * @return The JSONObject with the bot id, server count, shard count and the guild count of each shard.
+     */
+    static JSONObject guildData(ShardManager shardManager){
+        JSONObject data = new JSONObject();
+        data.put("server_count", shardManager.getGuilds().size());
+        data.put("bot_id", shardManager.getShardById(0).getSelfUser().getId());
+        data.put("shard_count", shardManager.getShardsTotal());
+
+        ArrayList<Integer> shardGuildCounts = new ArrayList<>();
+        for(JDA jdaShard : shardManager.getShards()){
+            shardGuildCounts.add(jdaShard.getGuilds().size());
+        }
+        data.put("shards", new JSONArray(shardGuildCounts));
+
+        return data;
+    }
+
+    /**
+     * Creates the guild count data of the given {@link net.dv8tion.jda.core.JDA JDA instance}
+     * without any authorization tokens.
+     *
+     * @param jda
+     *        An instance of {@link net.dv8tion.jda.core.JDA JDA}.
+     *
+     * @return The JSONObject with the bot id, server count and, if sharded, the shard id and shard count.
+     */
+    static JSONObject guildData(JDA jda){
+        JSONObject data = new JSONObject();
+
+        data.put("server_count", jda.getGuilds().size());
+        data.put("bot_id", jda.getSelfUser().getId());
+        if(jda.getShardInfo() != null){
+            data.put("shard_id", jda.getShardInfo().getShardId());
+            data.put("shard_count", jda.getShardInfo().getShardTotal());
+        }
+        return data;
+    }
+
+    /**
+     * Creates the guild count data for the given bot id without any authorization tokens.
+     *
+     * @param botId
+     *        The ID of the bot you want to post data for.
+     * @param servers
+     *        Total amount of servers this bot is in.
+     *
+     * @return The JSONObject with the bot id and server count.
+     */
+    static JSONObject guildData(long botId, int servers){
+        JSONObject data = new JSONObject();
+
+        data.put("server_count", servers);
+        data.put("bot_id", Long.toString(botId));
+        return data;
+    }
+
+    /**
+     * @return The {@link okhttp3.OkHttpClient OkHttpClient} for posts to the lists. It shares its connections
+     *         with the client for BotBlock, but doesn't gzip.
+     */
+    static OkHttpClient getDirectClient(){
+        return directClient;
+    }
 }
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import com.nathanwebb.botblock4j.exceptions.FailedToSendException;
+import net.dv8tion.jda.bot.sharding.ShardManager;
+import net.dv8tion.jda.core.JDA;
+import okhttp3.*;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts guild counts directly to each bot list in parallel, instead of letting BotBlock forward them.
+ * <br>Only lists with a registered {@link com.nathanwebb.botblock4j.ListEndpoint ListEndpoint} are supported.
+ * The results are collected in the same format as the response of BotBlock, so errors are reported the same way.
+ */
+public class DirectRequests {
+    /**
+     * Milliseconds a post may take longer than the largest timeout of the posted lists before it is cancelled.
+     */
+    static final long TIMEOUT_MARGIN_MILLIS = 1000;
+
+    private static final Map<String, ListEndpoint> endpoints = new ConcurrentHashMap<>();
+
+    static {
+        registerEndpoint(new ListEndpoint.Builder("top.gg", "https://top.gg/api/bots/{id}/stats")
+                .addField("server_count", "server_count")
+                .addField("shard_id", "shard_id")
+                .addField("shard_count", "shard_count")
+                .addField("shards", "shards")
+                .build());
+        registerEndpoint(new ListEndpoint.Builder("discord.bots.gg", "https://discord.bots.gg/api/v1/bots/{id}/stats")
+                .addField("guildCount", "server_count")
+                .addField("shardId", "shard_id")
+                .addField("shardCount", "shard_count")
+                .build());
+        registerEndpoint(new ListEndpoint.Builder("botsfordiscord.com", "https://botsfordiscord.com/api/bot/{id}")
+                .addField("server_count", "server_count")
+                .build());
+        registerEndpoint(new ListEndpoint.Builder("lbots.org", "https://lbots.org/api/v1/bots/{id}/stats")
+                .addField("guild_count", "server_count")
+                .addField("shard_id", "shard_id")
+                .addField("shard_count", "shard_count")
+                .build());
+        registerEndpoint(new ListEndpoint.Builder("discordbotlist.com", "https://discordbotlist.com/api/bots/{id}/stats")
+                .setAuthPrefix("Bot ")
+                .addField("guilds", "server_count")
+                .addField("shard_id", "shard_id")
+                .build());
+    }
+
+    /**
+     * Registers the given {@link com.nathanwebb.botblock4j.ListEndpoint ListEndpoint}.
+     * <br><b>If an endpoint for the same site has already been registered, it will be overwritten.</b>
+     *
+     * @param endpoint
+     *        The ListEndpoint to register.
+     */
+    public static void registerEndpoint(ListEndpoint endpoint){
+        endpoints.put(endpoint.getSite(), endpoint);
+    }
+
+    /**
+     * Posts the guild total of the given {@link net.dv8tion.jda.bot.sharding.ShardManager ShardManager} directly to each list.
+     * <br>The User Agent is the ID of the bot.
+     *
+     * @param shardManager
+     *        An instance of the {@link net.dv8tion.jda.bot.sharding.ShardManager ShardManager}.
+     * @param auth
+     *        An instance of {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+     *
+     * @throws FailedToSendException
+     *         If one or more lists returned errors, timed out or are not supported.
+     * @throws IOException
+     *         If the thread was interrupted while waiting for the lists.
+     */
+    public static void postGuilds(ShardManager shardManager, BlockAuth auth) throws FailedToSendException, IOException{
+        BotBlockRequests.checkFailures(postCounts(BotBlockRequests.guildData(shardManager), auth));
+    }
+
+    /**
+     * Posts the guild total of the provided {@link net.dv8tion.jda.core.JDA JDA instance} directly to each list.
+     * <br>If the instance of JDA is part of sharding, the current shard id and shard total will be send too.
+     * <br>The User Agent is the ID of the bot.
+     *
+     * @param jda
+     *        An instance of {@link net.dv8tion.jda.core.JDA JDA}.
+     * @param auth
+     *        An instance of {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+     *
+     * @throws FailedToSendException
+     *         If one or more lists returned errors, timed out or are not supported.
+     * @throws IOException
+     *         If the thread was interrupted while waiting for the lists.
+     */
+    public static void postGuilds(JDA jda, BlockAuth auth) throws FailedToSendException, IOException{
+        BotBlockRequests.checkFailures(postCounts(BotBlockRequests.guildData(jda), auth));
+    }
+
+    /**
+     * Posts the provided bot ID and the amount of servers directly to each list.
+     *
+     * @param botId
+     *        The ID of the bot you want to post data for as String.
+     * @param servers
+     *        Total amount of servers this bot is in.
+     * @param auth
+     *        An instance of {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+     *
+     * @throws FailedToSendException
+     *         If one or more lists returned errors, timed out or are not supported.
+     * @throws IOException
+     *         If the thread was interrupted while waiting for the lists.
+     * @throws IllegalStateException
+     *         When the provided String is not a Number.
+     *
+     * @see #postGuilds(long, int, BlockAuth)
+     */
+    public static void postGuilds(String botId, int servers, BlockAuth auth) throws FailedToSendException, IOException{
+        if(!NumberUtils.isCreatable(botId))
+            throw new IllegalStateException("The provided String wasn't a Number!");
+
+        postGuilds(Long.parseLong(botId), servers, auth);
+    }
+
+    /**
+     * Posts the provided bot ID and the amount of servers directly to each list.
+     *
+     * @param botId
+     *        The ID of the bot you want to post data for.
+     * @param servers
+     *        Total amount of servers this bot is in.
+     * @param auth
+     *        An instance of {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+     *
+     * @throws FailedToSendException
+     *         If one or more lists returned errors, timed out or are not supported.
+     * @throws IOException
+     *         If the thread was interrupted while waiting for the lists.
+     */
+    public static void postGuilds(long botId, int servers, BlockAuth auth) throws FailedToSendException, IOException{
+        BotBlockRequests.checkFailures(postCounts(BotBlockRequests.guildData(botId, servers), auth));
+    }
+
+    /**
+     * Posts the given data to every list of the {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth} in parallel
+     * and waits until all of them have answered or timed out.
+     * <br>The connect, read and write timeouts start over with every read, so a list that answers very slowly could
+     * keep a post running for a long time. Posts that take longer than the largest timeout of the posted lists plus
+     * {@value #TIMEOUT_MARGIN_MILLIS} milliseconds are cancelled and reported as failures.
+     *
+     * @param  data
+     *         The guild count data without any authorization tokens.
+     * @param  auth
+     *         An instance of {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+     *
+     * @throws IOException
+     *         If the thread was interrupted while waiting for the lists.
+     *
+     * @return The results in the same format as the response of BotBlock:
+     *         {@code success} and {@code failure} containing {@code [status code, message]} for each list.
+     *         <br>Additionally {@code skipped} contains the lists that weren't posted to because of their rate limit.
+     *         These don't count as failures.
+     */
+    static JSONObject postCounts(JSONObject data, BlockAuth auth) throws IOException{
+        String botId = data.getString("bot_id");
+        Map<String, JSONArray> success = new ConcurrentHashMap<>();
+        Map<String, JSONArray> failure = new ConcurrentHashMap<>();
+        Set<String> skipped = ConcurrentHashMap.newKeySet();
+        Map<String, String> authHashMap = auth.getAuthHashMap();
+        CountDownLatch latch = new CountDownLatch(authHashMap.size());
+        //The callback of a post and the timeout below both remove it from here, whoever is first reports the result.
+        Map<String, PendingPost> pending = new ConcurrentHashMap<>();
+        Object resultLock = new Object();
+        long[] maxTimeoutMillis = new long[1];
+
+        authHashMap.forEach((site, token) -> {
+            ListEndpoint endpoint = endpoints.get(site);
+            if(endpoint == null){
+                failure.put(site, new JSONArray().put(0).put("Posting directly to this list is not supported."));
+                latch.countDown();
+                return;
+            }
+            long acquired = endpoint.tryAcquire(botId);
+            if(acquired < 0){
+                skipped.add(site);
+                latch.countDown();
+                return;
+            }
+
+            OkHttpClient client = BotBlockRequests.getDirectClient().newBuilder()
+                    .connectTimeout(endpoint.getTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .readTimeout(endpoint.getTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .writeTimeout(endpoint.getTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .build();
+            RequestBody body = RequestBody.create(null, endpoint.createBody(data).toString());
+            Request request = new Request.Builder()
+                    .url(endpoint.getUrl(botId))
+                    .post(body)
+                    .addHeader("User-Agent", botId)
+                    .addHeader("Content-Type", "application/json")
+                    .addHeader("Authorization", endpoint.getAuthorization(token))
+                    .build();
+            maxTimeoutMillis[0] = Math.max(maxTimeoutMillis[0], endpoint.getTimeoutMillis());
+
+            PendingPost post = new PendingPost(endpoint, acquired, client.newCall(request));
+            pending.put(site, post);
+            post.call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    report(false, new JSONArray().put(0).put(String.valueOf(e.getMessage())));
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try(ResponseBody responseBody = response.body()) {
+                        String responseMsg = responseBody == null ? "" : responseBody.string();
+                        report(response.isSuccessful(), new JSONArray().put(response.code()).put(responseMsg));
+                    } catch (IOException e) {
+                        report(false, new JSONArray().put(response.code()).put(String.valueOf(e.getMessage())));
+                    }
+                }
+
+                private void report(boolean successful, JSONArray result) {
+                    try {
+                        synchronized(resultLock) {
+                            if(!pending.remove(site, post))
+                                return;
+                            if(successful){
+                                success.put(site, result);
+                            } else {
+                                endpoint.release(botId, acquired);
+                                failure.put(site, result);
+                            }
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        });
+
+        long waitMillis = maxTimeoutMillis[0] + TIMEOUT_MARGIN_MILLIS;
+        try {
+            latch.await(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while posting to the lists.");
+        } finally {
+            synchronized(resultLock) {
+                pending.forEach((site, post) -> {
+                    post.call.cancel();
+                    post.endpoint.release(botId, post.acquired);
+                    failure.put(site, new JSONArray().put(0).put("No answer after " + waitMillis + "ms."));
+                });
+                pending.clear();
+            }
+        }
+
+        //BotBlock returns an empty array instead of an empty object when there is nothing to report.
+        JSONObject response = new JSONObject();
+        response.put("success", success.isEmpty() ? new JSONArray() : new JSONObject(success));
+        response.put("failure", failure.isEmpty() ? new JSONArray() : new JSONObject(failure));
+        response.put("skipped", new JSONArray(skipped));
+        return response;
+    }
+
+    private static final class PendingPost {
+        private final ListEndpoint endpoint;
+        private final long acquired;
+        private final Call call;
+
+        private PendingPost(ListEndpoint endpoint, long acquired, Call call){
+            this.endpoint = endpoint;
+            this.acquired = acquired;
+            this.call = call;
+        }
+    }
+}
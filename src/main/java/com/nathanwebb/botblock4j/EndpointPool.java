@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps track of the latency and error rate of each configured BotBlock API base URL.
+ * <br>Both are smoothed, so a single slow or failed request doesn't move traffic away right away.
+ * <br>Both are also slowly forgotten, so an endpoint that recovered gets used again. Only the endpoint that is used
+ * gets new latency samples, so the latency of the others falls back towards unknown until one of them ranks first and
+ * is measured again. The closer two endpoints are, the sooner the slower one is tried again.
+ */
+class EndpointPool {
+    //How much a new sample counts towards the smoothed values.
+    private static final double SMOOTHING = 0.3;
+    //An error rate of 1 counts like this many milliseconds of latency.
+    private static final double ERROR_PENALTY_MILLIS = 10_000;
+    static final long ERROR_HALF_LIFE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    static final long LATENCY_HALF_LIFE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final List<Endpoint> endpoints;
+    private final LongSupplier clock;
+
+    EndpointPool(List<String> baseURLs){
+        this(baseURLs, System::currentTimeMillis);
+    }
+
+    /**
+     * @param baseURLs
+     *        The base URLs, in the order they should be tried while they are equally healthy.
+     * @param clock
+     *        Gives the current time in milliseconds.
+     */
+    EndpointPool(List<String> baseURLs, LongSupplier clock){
+        this.clock = clock;
+        List<Endpoint> list = new ArrayList<>();
+        for(String baseURL : baseURLs){
+            list.add(new Endpoint(baseURL.endsWith("/") ? baseURL : baseURL + "/"));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return The endpoints ordered from healthiest to least healthy. Endpoints with the same score keep the
+     *         order they were configured in.
+     */
+    List<Endpoint> ranked(){
+        //The scores are taken once up front, as other threads may update them while sorting.
+        long now = clock.getAsLong();
+        Map<Endpoint, Double> scores = new IdentityHashMap<>();
+        for(Endpoint endpoint : endpoints){
+            scores.put(endpoint, endpoint.score(now));
+        }
+        List<Endpoint> ranked = new ArrayList<>(endpoints);
+        ranked.sort(Comparator.comparingDouble(scores::get));
+        return ranked;
+    }
+
+    class Endpoint {
+        private final String baseURL;
+        private double latencyMillis;
+        private long latencyUpdate;
+        private double errorRate;
+        private long lastUpdate;
+
+        Endpoint(String baseURL){
+            this.baseURL = baseURL;
+        }
+
+        String getBaseURL(){
+            return baseURL;
+        }
+
+        /**
+         * @param latencyNanos
+         *        The time it took to receive the response.
+         */
+        synchronized void recordSuccess(long latencyNanos){
+            double millis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            long now = clock.getAsLong();
+            double latency = decayedLatency(now);
+            latencyMillis = latency == 0 ? millis : latency + SMOOTHING * (millis - latency);
+            latencyUpdate = now;
+            errorRate = decayedErrorRate(now) * (1 - SMOOTHING);
+            lastUpdate = now;
+        }
+
+        synchronized void recordFailure(){
+            long now = clock.getAsLong();
+            errorRate = decayedErrorRate(now) * (1 - SMOOTHING) + SMOOTHING;
+            lastUpdate = now;
+        }
+
+        synchronized double score(long now){
+            return decayedLatency(now) + decayedErrorRate(now) * ERROR_PENALTY_MILLIS;
+        }
+
+        private double decayedLatency(long now){
+            if(latencyMillis == 0)
+                return 0;
+
+            return latencyMillis * Math.pow(0.5, (double) (now - latencyUpdate) / LATENCY_HALF_LIFE_MILLIS);
+        }
+
+        private double decayedErrorRate(long now){
+            if(errorRate == 0)
+                return 0;
+
+            return errorRate * Math.pow(0.5, (double) (now - lastUpdate) / ERROR_HALF_LIFE_MILLIS);
+        }
+    }
+}
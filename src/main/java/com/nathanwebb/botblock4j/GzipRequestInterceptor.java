@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gzips request bodies that are larger than the threshold and sends them with {@code Content-Encoding: gzip}.
+ * <br>When a server answers a gzipped request with {@code 400 Bad Request}, {@code 415 Unsupported Media Type} or
+ * {@code 422 Unprocessable Entity}, the request is sent again uncompressed. Only when that one isn't answered with a
+ * client error as well, the gzip was the problem and all following requests to that host and port are sent uncompressed.
+ * Otherwise the request itself was invalid and the answer to the uncompressed request is returned.
+ */
+class GzipRequestInterceptor implements Interceptor {
+    private final Set<String> rejectingHosts = ConcurrentHashMap.newKeySet();
+    private volatile long threshold;
+
+    GzipRequestInterceptor(long threshold){
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param threshold
+     *        The amount of bytes a body must exceed to be gzipped. 0 or less disables gzip.
+     */
+    void setThreshold(long threshold){
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        long limit = threshold;
+
+        if(limit <= 0 || body == null || request.header("Content-Encoding") != null
+                || rejectingHosts.contains(hostOf(request)) || body.contentLength() <= limit)
+            return chain.proceed(request);
+
+        Request gzipped = request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), gzip(body))
+                .build();
+        Response response = chain.proceed(gzipped);
+        //415 is the proper answer, but servers that don't know Content-Encoding usually fail to parse the body instead.
+        if(response.code() != 400 && response.code() != 415 && response.code() != 422)
+            return response;
+
+        response.close();
+        Response retried = chain.proceed(request);
+        if(retried.code() < 400 || retried.code() >= 500)
+            rejectingHosts.add(hostOf(request));
+        return retried;
+    }
+
+    private static String hostOf(Request request){
+        return request.url().host() + ":" + request.url().port();
+    }
+
+    static RequestBody gzip(RequestBody body) throws IOException {
+        //Compressed into a buffer first, so the Content-Length is known and the body can be sent again on retries.
+        Buffer buffer = new Buffer();
+        try(BufferedSink gzipSink = Okio.buffer(new GzipSink(buffer))) {
+            body.writeTo(gzipSink);
+        }
+        return RequestBody.create(body.contentType(), buffer.readByteString());
+    }
+}
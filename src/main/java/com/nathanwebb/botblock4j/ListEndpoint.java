@@ -0,0 +1,265 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import org.apache.commons.lang3.ObjectUtils;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how guild counts are posted directly to a single bot list, without going through BotBlock.
+ * <br>Use the {@link com.nathanwebb.botblock4j.ListEndpoint.Builder Builder} to create one and register it with
+ * {@link com.nathanwebb.botblock4j.DirectRequests#registerEndpoint(ListEndpoint) DirectRequests.registerEndpoint(ListEndpoint)}.
+ */
+public class ListEndpoint {
+    /**
+     * How many milliseconds a post may come before the rate limit is over. The timer of
+     * {@link com.nathanwebb.botblock4j.BotBlockAPI BotBlockAPI} doesn't fire exactly on time, so without this
+     * posting every minute to a list with a rate limit of a minute would skip about every other post.
+     */
+    static final long RATE_LIMIT_TOLERANCE_MILLIS = 1000;
+
+    private final String site;
+    private final String url;
+    private final String authPrefix;
+    private final Map<String, String> fields;
+    private final long rateLimitMillis;
+    private final long timeoutMillis;
+    private final Map<String, Long> lastPosts = new ConcurrentHashMap<>();
+
+    private ListEndpoint(String site, String url, String authPrefix, Map<String, String> fields, long rateLimitMillis, long timeoutMillis){
+        this.site = site;
+        this.url = url;
+        this.authPrefix = authPrefix;
+        this.fields = fields;
+        this.rateLimitMillis = rateLimitMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return The site of the list, in the same format as used in {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+     */
+    public String getSite() {
+        return site;
+    }
+
+    /**
+     * @param  botId
+     *         The ID of the bot.
+     *
+     * @return The URL to post the guild count of the bot to.
+     */
+    public String getUrl(String botId) {
+        return url.replace("{id}", botId);
+    }
+
+    /**
+     * @param  token
+     *         The token of this list from the {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+     *
+     * @return The value for the {@code Authorization} header.
+     */
+    public String getAuthorization(String token) {
+        return authPrefix + token;
+    }
+
+    /**
+     * @return The minimum amount of milliseconds between two posts for the same bot.
+     */
+    public long getRateLimitMillis() {
+        return rateLimitMillis;
+    }
+
+    /**
+     * @return The connect, read and write timeout in milliseconds.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Creates the body this list expects out of the guild count data that would be sent to BotBlock.
+     * <br>Fields that aren't present in the data (for example {@code shard_id} when not sharding) are left out.
+     *
+     * @param  data
+     *         The guild count data without any authorization tokens.
+     *
+     * @return The JSONObject to post to this list.
+     */
+    public JSONObject createBody(JSONObject data) {
+        JSONObject body = new JSONObject();
+        fields.forEach((listField, dataField) -> {
+            if(data.has(dataField))
+                body.put(listField, data.get(dataField));
+        });
+        return body;
+    }
+
+    /**
+     * Checks if the bot may post to this list again and if so, marks that it is posting now.
+     *
+     * @param  botId
+     *         The ID of the bot.
+     *
+     * @return The time the post was marked with, or -1 if the rate limit of this list doesn't allow the post.
+     */
+    long tryAcquire(String botId) {
+        return tryAcquire(botId, System.currentTimeMillis());
+    }
+
+    /**
+     * {@link #tryAcquire(String)} with the given current time in milliseconds.
+     */
+    long tryAcquire(String botId, long now) {
+        boolean[] allowed = new boolean[1];
+        lastPosts.compute(botId, (id, last) -> {
+            if(last != null && now - last < rateLimitMillis - RATE_LIMIT_TOLERANCE_MILLIS)
+                return last;
+            allowed[0] = true;
+            return now;
+        });
+        return allowed[0] ? now : -1;
+    }
+
+    /**
+     * Gives back the rate limit slot of a post that didn't go through, so the bot can post again right away.
+     *
+     * @param botId
+     *        The ID of the bot.
+     * @param acquired
+     *        The time returned by {@link #tryAcquire(String)}.
+     */
+    void release(String botId, long acquired) {
+        lastPosts.remove(botId, acquired);
+    }
+
+    public static class Builder{
+        private String site;
+        private String url;
+        private String authPrefix = "";
+        private Map<String, String> fields = new LinkedHashMap<>();
+        private long rateLimitMillis = TimeUnit.MINUTES.toMillis(1);
+        private long timeoutMillis = TimeUnit.SECONDS.toMillis(10);
+
+        /**
+         * @param  site
+         *         The site of the list. This must be the same as used in {@link com.nathanwebb.botblock4j.BlockAuth BlockAuth}.
+         *         <br>Example: {@code lbots.org}
+         * @param  url
+         *         The URL to post the guild count to. {@code {id}} is replaced with the ID of the bot.
+         *         <br>Example: {@code https://lbots.org/api/v1/bots/{id}/stats}
+         *
+         * @throws IllegalStateException
+         *         When either the site or the url are null.
+         */
+        public Builder(String site, String url){
+            if(!ObjectUtils.allNotNull(site, url))
+                throw new IllegalStateException("site and url may not be null.");
+
+            this.site = site.replaceAll("^https?://", "");
+            this.url = url;
+        }
+
+        /**
+         * Sets a prefix that is put in front of the token in the {@code Authorization} header.
+         * <br>Example: {@code "Bot "}
+         *
+         * @param  authPrefix
+         *         The prefix of the token.
+         *
+         * @return The Builder after the prefix has been set.
+         */
+        public Builder setAuthPrefix(String authPrefix){
+            this.authPrefix = authPrefix == null ? "" : authPrefix;
+            return this;
+        }
+
+        /**
+         * Adds a field to the body that is posted to the list.
+         *
+         * @param  listField
+         *         The name of the field the list expects.
+         * @param  dataField
+         *         The name of the field that BotBlock uses for the same value.
+         *         <br>One of {@code server_count}, {@code shard_id}, {@code shard_count} or {@code shards}.
+         *
+         * @return The Builder after the field has been added.
+         */
+        public Builder addField(String listField, String dataField){
+            fields.put(listField, dataField);
+            return this;
+        }
+
+        /**
+         * Sets the minimum time between two posts of the same bot to this list.
+         * <br>Posts made in between are not sent and reported as skipped. Posts that failed don't count.
+         * A post up to a second early is still sent, to allow for timer jitter. Default is 1 minute.
+         *
+         * @param  rateLimit
+         *         The minimum time between posts.
+         * @param  unit
+         *         The {@link java.util.concurrent.TimeUnit TimeUnit} of the rate limit.
+         *
+         * @return The Builder after the rate limit has been set.
+         */
+        public Builder setRateLimit(long rateLimit, TimeUnit unit){
+            this.rateLimitMillis = unit.toMillis(rateLimit);
+            return this;
+        }
+
+        /**
+         * Sets the connect, read and write timeout for posts to this list. Default is 10 seconds.
+         * <br>A post that takes a second longer than the largest timeout of all lists posted to at the same time is
+         * cancelled, even if the list keeps sending data.
+         *
+         * @param  timeout
+         *         The timeout.
+         * @param  unit
+         *         The {@link java.util.concurrent.TimeUnit TimeUnit} of the timeout.
+         *
+         * @throws IllegalArgumentException
+         *         If the timeout is less than 1.
+         *
+         * @return The Builder after the timeout has been set.
+         */
+        public Builder setTimeout(long timeout, TimeUnit unit){
+            if(timeout < 1)
+                throw new IllegalArgumentException("The timeout must be at least 1.");
+
+            this.timeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Creates a new {@link com.nathanwebb.botblock4j.ListEndpoint ListEndpoint}.
+         *
+         * @return new {@link com.nathanwebb.botblock4j.ListEndpoint ListEndpoint} instance.
+         */
+        public ListEndpoint build(){
+            if(fields.isEmpty())
+                throw new IllegalStateException("Empty fields Map is not allowed!");
+
+            return new ListEndpoint(site, url, authPrefix, new LinkedHashMap<>(fields), rateLimitMillis, timeoutMillis);
+        }
+    }
+}
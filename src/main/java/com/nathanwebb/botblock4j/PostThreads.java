@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the blocking guild count posts.
+ * <br>On Java 21 and newer every post gets its own virtual thread, so a blocked HTTP call doesn't tie up a
+ * platform thread. On older versions the post runs on the calling thread, like before.
+ * <br>With virtual threads all {@link com.nathanwebb.botblock4j.BotBlockAPI BotBlockAPI} instances share one timer
+ * thread, see {@link #scheduleShared(Runnable, long, TimeUnit)}.
+ * <br>Setting the system property {@code botblock4j.virtualThreads} to {@code false} turns virtual threads off.
+ */
+final class PostThreads {
+    private static final ExecutorService VIRTUAL_EXECUTOR = createVirtualExecutor();
+
+    private static ScheduledExecutorService sharedTimer;
+    private static int sharedTasks = 0;
+
+    private PostThreads(){}
+
+    /**
+     * Runs the given post on a new virtual thread, or on the calling thread when virtual threads aren't available.
+     *
+     * @param post
+     *        The post to run.
+     */
+    static void execute(Runnable post){
+        if(VIRTUAL_EXECUTOR != null)
+            VIRTUAL_EXECUTOR.execute(post);
+        else
+            post.run();
+    }
+
+    /**
+     * @return {@code true} if posts run on virtual threads.
+     */
+    static boolean isVirtual(){
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * Runs the given tick at a fixed rate on the timer thread shared by all instances.
+     * <br>The timer thread is started with the first task and stopped after the last one was cancelled through
+     * {@link #cancelShared(ScheduledFuture)}, so it only keeps the JVM running while something is scheduled.
+     * The tick should only hand the post over to {@link #execute(Runnable)}, as it blocks the timer of every instance.
+     *
+     * @param tick
+     *        The task to run.
+     * @param interval
+     *        The initial delay and the delay between runs.
+     * @param unit
+     *        The unit of the interval.
+     *
+     * @return The scheduled task.
+     */
+    static synchronized ScheduledFuture<?> scheduleShared(Runnable tick, long interval, TimeUnit unit){
+        if(sharedTimer == null)
+            sharedTimer = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "BotBlock4J-Timer"));
+
+        ScheduledFuture<?> task = sharedTimer.scheduleAtFixedRate(tick, interval, interval, unit);
+        sharedTasks++;
+        return task;
+    }
+
+    /**
+     * Cancels a task of {@link #scheduleShared(Runnable, long, TimeUnit)} and stops the shared timer thread when it
+     * was the last one.
+     *
+     * @param task
+     *        The task to cancel.
+     */
+    static synchronized void cancelShared(ScheduledFuture<?> task){
+        task.cancel(false);
+        if(--sharedTasks == 0){
+            sharedTimer.shutdown();
+            sharedTimer = null;
+        }
+    }
+
+    private static ExecutorService createVirtualExecutor(){
+        if(!Boolean.parseBoolean(System.getProperty("botblock4j.virtualThreads", "true")))
+            return null;
+
+        //The library is compiled for Java 8, so the executor has to be looked up at runtime.
+        //On Java 19 and 20 it only exists as preview feature and throws when the preview isn't enabled.
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j.replay;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single request and its response, as written by the {@link com.nathanwebb.botblock4j.replay.RecordingInterceptor RecordingInterceptor}.
+ * <br>Only the size of the request body is kept, so authorization tokens never end up in a recording.
+ * <br>Requests that failed without a response, for example because of a timeout or a refused connection,
+ * are recorded with status code 0 and the error. When the response arrived but its body couldn't be read,
+ * the status code is kept together with the error.
+ */
+public class RecordedExchange {
+    private final long offsetMillis;
+    private final String method;
+    private final String host;
+    private final String path;
+    private final long requestBytes;
+    private final long durationMillis;
+    private final int code;
+    private final String contentType;
+    private final String body;
+    private final String error;
+
+    public RecordedExchange(long offsetMillis, String method, String host, String path, long requestBytes, long durationMillis,
+                            int code, String contentType, String body, String error){
+        this.offsetMillis = offsetMillis;
+        this.method = method;
+        this.host = host;
+        this.path = path;
+        this.requestBytes = requestBytes;
+        this.durationMillis = durationMillis;
+        this.code = code;
+        this.contentType = contentType;
+        this.body = body;
+        this.error = error;
+    }
+
+    /**
+     * Reads all exchanges of a recording.
+     *
+     * @param  file
+     *         The file that was written by a {@link com.nathanwebb.botblock4j.replay.RecordingInterceptor RecordingInterceptor}.
+     *
+     * @throws IOException
+     *         If the file can't be read.
+     *
+     * @return The exchanges in the order they were recorded.
+     */
+    public static List<RecordedExchange> readAll(Path file) throws IOException{
+        List<RecordedExchange> exchanges = new ArrayList<>();
+        for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)){
+            if(!line.isEmpty())
+                exchanges.add(fromJson(new JSONObject(line)));
+        }
+        return exchanges;
+    }
+
+    static RecordedExchange fromJson(JSONObject json){
+        return new RecordedExchange(json.getLong("t"), json.getString("method"), json.getString("host"), json.getString("path"),
+                json.getLong("req"), json.getLong("dur"), json.getInt("code"), json.optString("type", null),
+                json.getString("body"), json.optString("error", null));
+    }
+
+    JSONObject toJson(){
+        JSONObject json = new JSONObject();
+        json.put("t", offsetMillis);
+        json.put("method", method);
+        json.put("host", host);
+        json.put("path", path);
+        json.put("req", requestBytes);
+        json.put("dur", durationMillis);
+        json.put("code", code);
+        json.putOpt("type", contentType);
+        json.put("body", body);
+        json.putOpt("error", error);
+        return json;
+    }
+
+    /**
+     * @return The milliseconds between the first recorded request and this one.
+     */
+    public long getOffsetMillis() {
+        return offsetMillis;
+    }
+
+    /**
+     * @return The HTTP method of the request.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return The host and port the request was sent to, for example {@code botblock.org:443}.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return The path of the request, for example {@code /api/count}.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The size of the request body in bytes as it was sent, or -1 if it wasn't known.
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return The milliseconds it took until the response was received.
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return The HTTP status code of the response, or 0 if the request failed without a response.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return The Content-Type of the response, or null if there was none.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return The body of the response.
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return The error the request failed with, for example {@code java.net.SocketTimeoutException: timeout},
+     *         or null if the whole response was received.
+     */
+    public String getError() {
+        return error;
+    }
+}
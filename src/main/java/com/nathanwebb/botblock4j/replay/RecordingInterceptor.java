@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j.replay;
+
+import okhttp3.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every request and its response to a file, one JSON object per line.
+ * <br>Requests that fail without a response are recorded too, with the error. The file can be played back with the
+ * {@code ReplayServer} of the benchmark source set.
+ * <br>Add it with {@link com.nathanwebb.botblock4j.BotBlockRequests#addInterceptor(Interceptor) BotBlockRequests.addInterceptor(Interceptor)}
+ * and remove it with {@link com.nathanwebb.botblock4j.BotBlockRequests#removeInterceptor(Interceptor) BotBlockRequests.removeInterceptor(Interceptor)}
+ * or {@link #close()} it to stop recording.
+ * <br>Recording never makes a request fail. If the file can't be written, recording stops and the error is printed.
+ */
+public class RecordingInterceptor implements Interceptor, Closeable {
+    //Responses of BotBlock are small, anything above this is cut off.
+    private static final long MAX_BODY_BYTES = 1024 * 1024;
+
+    private final Writer writer;
+    private long firstRequest = -1;
+    private boolean closed = false;
+
+    /**
+     * @param  file
+     *         The file to write to. If it already exists, the new exchanges are appended.
+     *
+     * @throws IOException
+     *         If the file can't be opened.
+     */
+    public RecordingInterceptor(Path file) throws IOException{
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody requestBody = request.body();
+        long requestBytes = requestBody == null ? 0 : requestBody.contentLength();
+        String host = request.url().host() + ":" + request.url().port();
+        long offset = offset(System.currentTimeMillis());
+        long start = System.nanoTime();
+
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            write(new RecordedExchange(offset, request.method(), host, request.url().encodedPath(), requestBytes,
+                    duration, 0, null, "", e.toString()));
+            throw e;
+        }
+
+        //The response is returned as it is, so reading the body fails for the caller the same way it did here.
+        String body = "";
+        String error = null;
+        try {
+            body = response.peekBody(MAX_BODY_BYTES).string();
+        } catch (IOException e) {
+            error = e.toString();
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        MediaType contentType = response.body() == null ? null : response.body().contentType();
+
+        write(new RecordedExchange(offset, request.method(), host, request.url().encodedPath(), requestBytes,
+                duration, response.code(), contentType == null ? null : contentType.toString(), body, error));
+        return response;
+    }
+
+    private synchronized long offset(long startMillis){
+        if(firstRequest < 0)
+            firstRequest = startMillis;
+
+        return startMillis - firstRequest;
+    }
+
+    private synchronized void write(RecordedExchange exchange){
+        //Requests may still pass through after close() until the interceptor is removed, they just aren't recorded.
+        if(closed)
+            return;
+
+        try {
+            writer.write(exchange.toJson().toString());
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            closed = true;
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                //already broken
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        writer.close();
+    }
+}
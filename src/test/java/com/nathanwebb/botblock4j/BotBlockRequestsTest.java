@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BotBlockRequestsTest {
+    private static final String SUCCESS = "{\"success\":{\"lbots.org\":[200,\"{}\"]},\"failure\":[]}";
+
+    private MockWebServer first;
+    private MockWebServer second;
+    private BlockAuth auth = new BlockAuth.Builder().addListAuthToken("lbots.org", "token").build();
+
+    @Before
+    public void setUp() throws Exception{
+        first = new MockWebServer();
+        second = new MockWebServer();
+        first.start();
+        second.start();
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        first.shutdown();
+        second.shutdown();
+        BotBlockRequests.setBaseURLs("https://botblock.org/api/");
+    }
+
+    @Test
+    public void postsToTheCountRoute() throws Throwable{
+        BotBlockRequests.setBaseURLs(first.url("/api").toString());
+        first.enqueue(new MockResponse().setBody(SUCCESS));
+
+        BotBlockRequests.postGuilds(1L, 10, auth);
+
+        assertEquals("/api/count", first.takeRequest().getPath());
+    }
+
+    @Test
+    public void skipsAnUnreachableEndpoint() throws Throwable{
+        MockWebServer unreachable = new MockWebServer();
+        unreachable.start();
+        String unreachableURL = unreachable.url("/api/").toString();
+        unreachable.shutdown();
+        BotBlockRequests.setBaseURLs(unreachableURL, first.url("/api/").toString());
+        first.enqueue(new MockResponse().setBody(SUCCESS));
+        first.enqueue(new MockResponse().setBody(SUCCESS));
+
+        BotBlockRequests.postGuilds(1L, 10, auth);
+        BotBlockRequests.postGuilds(1L, 10, auth);
+
+        assertEquals(2, first.getRequestCount());
+    }
+
+    @Test
+    public void failsOverOnServerErrorsWithinOneCall() throws Throwable{
+        BotBlockRequests.setBaseURLs(first.url("/api/").toString(), second.url("/api/").toString());
+        first.enqueue(new MockResponse().setResponseCode(503));
+        second.enqueue(new MockResponse().setBody(SUCCESS));
+
+        BotBlockRequests.postGuilds(1L, 10, auth);
+
+        assertEquals(1, first.getRequestCount());
+        assertEquals(1, second.getRequestCount());
+    }
+
+    @Test
+    public void failsWhenNoEndpointCanBeReached() throws Throwable{
+        MockWebServer unreachable = new MockWebServer();
+        unreachable.start();
+        String unreachableURL = unreachable.url("/api/").toString();
+        unreachable.shutdown();
+        BotBlockRequests.setBaseURLs(unreachableURL);
+
+        try {
+            BotBlockRequests.postGuilds(1L, 10, auth);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            //expected
+        }
+    }
+
+    @Test
+    public void prefersTheFasterEndpoint() throws Throwable{
+        BotBlockRequests.setBaseURLs(first.url("/api/").toString(), second.url("/api/").toString());
+        for(int i = 0; i < 3; i++){
+            first.enqueue(new MockResponse().setBody(SUCCESS).setHeadersDelay(300, TimeUnit.MILLISECONDS));
+            second.enqueue(new MockResponse().setBody(SUCCESS));
+        }
+
+        //the first call measures the first endpoint, the second one the other
+        for(int i = 0; i < 4; i++){
+            BotBlockRequests.postGuilds(1L, 10, auth);
+        }
+
+        assertEquals(1, first.getRequestCount());
+        assertEquals(3, second.getRequestCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNullBaseURLs(){
+        BotBlockRequests.setBaseURLs("https://botblock.org/api/", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidBaseURLs(){
+        BotBlockRequests.setBaseURLs("botblock.org");
+    }
+}
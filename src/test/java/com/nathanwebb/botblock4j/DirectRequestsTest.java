@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import com.nathanwebb.botblock4j.exceptions.FailedToSendException;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DirectRequestsTest {
+    private MockWebServer first;
+    private MockWebServer second;
+
+    @Before
+    public void setUp() throws Throwable{
+        first = new MockWebServer();
+        second = new MockWebServer();
+        first.start();
+        second.start();
+    }
+
+    @After
+    public void tearDown() throws Throwable{
+        first.shutdown();
+        second.shutdown();
+    }
+
+    private static ListEndpoint.Builder endpoint(String site, MockWebServer server){
+        return new ListEndpoint.Builder(site, server.url("/bots/").toString() + "{id}/stats")
+                .addField("guilds", "server_count")
+                .addField("shard_id", "shard_id");
+    }
+
+    @Test
+    public void postsTheListFieldsWithAuthorization() throws Throwable{
+        DirectRequests.registerEndpoint(endpoint("fields.test", first).setAuthPrefix("Bot ").build());
+        first.enqueue(new MockResponse().setBody("{}"));
+
+        DirectRequests.postCounts(BotBlockRequests.guildData(42L, 7), new BlockAuth.Builder().addListAuthToken("fields.test", "token").build());
+
+        RecordedRequest request = first.takeRequest();
+        assertEquals("/bots/42/stats", request.getPath());
+        assertEquals("Bot token", request.getHeader("Authorization"));
+        assertEquals("42", request.getHeader("User-Agent"));
+        //shard_id isn't part of the data, so it's left out
+        assertEquals("{\"guilds\":7}", request.getBody().readUtf8());
+    }
+
+    @Test
+    public void collectsResultsInTheRelayFormat() throws Throwable{
+        DirectRequests.registerEndpoint(endpoint("ok.test", first).build());
+        DirectRequests.registerEndpoint(endpoint("bad.test", second).build());
+        first.enqueue(new MockResponse().setBody("{\"ok\":true}"));
+        second.enqueue(new MockResponse().setResponseCode(401).setBody("Unauthorized"));
+        BlockAuth auth = new BlockAuth.Builder()
+                .addListAuthToken("ok.test", "a")
+                .addListAuthToken("bad.test", "b")
+                .addListAuthToken("unsupported.test", "c")
+                .build();
+
+        JSONObject response = DirectRequests.postCounts(BotBlockRequests.guildData(1L, 10), auth);
+
+        JSONObject success = response.getJSONObject("success");
+        assertEquals(1, success.length());
+        assertEquals(200, success.getJSONArray("ok.test").getInt(0));
+        assertEquals("{\"ok\":true}", success.getJSONArray("ok.test").getString(1));
+
+        JSONObject failure = response.getJSONObject("failure");
+        assertEquals(2, failure.length());
+        assertEquals(401, failure.getJSONArray("bad.test").getInt(0));
+        assertEquals("Unauthorized", failure.getJSONArray("bad.test").getString(1));
+        assertEquals(0, failure.getJSONArray("unsupported.test").getInt(0));
+        assertEquals(0, response.getJSONArray("skipped").length());
+
+        try {
+            BotBlockRequests.checkFailures(response);
+            fail("Expected a FailedToSendException");
+        } catch (FailedToSendException e) {
+            assertEquals(2, e.getBotLists().size());
+        }
+    }
+
+    @Test
+    public void successOnlyHasNoFailures() throws Throwable{
+        DirectRequests.registerEndpoint(endpoint("only.test", first).build());
+        first.enqueue(new MockResponse().setBody("{}"));
+
+        JSONObject response = DirectRequests.postCounts(BotBlockRequests.guildData(2L, 10), new BlockAuth.Builder().addListAuthToken("only.test", "a").build());
+
+        assertEquals("[]", response.get("failure").toString());
+        BotBlockRequests.checkFailures(response);
+    }
+
+    @Test
+    public void timesOutPerList() throws Throwable{
+        DirectRequests.registerEndpoint(endpoint("slow.test", first).setTimeout(200, TimeUnit.MILLISECONDS).build());
+        DirectRequests.registerEndpoint(endpoint("fast.test", second).build());
+        first.enqueue(new MockResponse().setBody("{}").setHeadersDelay(2, TimeUnit.SECONDS));
+        second.enqueue(new MockResponse().setBody("{}"));
+        BlockAuth auth = new BlockAuth.Builder()
+                .addListAuthToken("slow.test", "a")
+                .addListAuthToken("fast.test", "b")
+                .build();
+
+        long start = System.nanoTime();
+        JSONObject response = DirectRequests.postCounts(BotBlockRequests.guildData(3L, 10), auth);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("Took " + millis + "ms", millis < 1500);
+        assertEquals(0, response.getJSONObject("failure").getJSONArray("slow.test").getInt(0));
+        assertTrue(response.getJSONObject("success").has("fast.test"));
+    }
+
+    @Test
+    public void skipsPostsWithinTheRateLimit() throws Throwable{
+        DirectRequests.registerEndpoint(endpoint("limited.test", first).build());
+        first.enqueue(new MockResponse().setBody("{}"));
+        BlockAuth auth = new BlockAuth.Builder().addListAuthToken("limited.test", "a").build();
+
+        DirectRequests.postGuilds(4L, 10, auth);
+        JSONObject response = DirectRequests.postCounts(BotBlockRequests.guildData(4L, 10), auth);
+
+        assertEquals(new JSONArray().put("limited.test").toString(), response.getJSONArray("skipped").toString());
+        assertEquals("[]", response.get("failure").toString());
+        assertEquals(1, first.getRequestCount());
+        //a skipped list isn't a failure
+        DirectRequests.postGuilds(4L, 10, auth);
+    }
+
+    @Test
+    public void failedPostsDoNotUseTheRateLimit() throws Throwable{
+        DirectRequests.registerEndpoint(endpoint("flaky.test", first).build());
+        first.enqueue(new MockResponse().setResponseCode(503).setBody("Unavailable"));
+        first.enqueue(new MockResponse().setBody("{}"));
+        BlockAuth auth = new BlockAuth.Builder().addListAuthToken("flaky.test", "a").build();
+
+        JSONObject failed = DirectRequests.postCounts(BotBlockRequests.guildData(5L, 10), auth);
+        JSONObject retried = DirectRequests.postCounts(BotBlockRequests.guildData(5L, 10), auth);
+
+        assertEquals(503, failed.getJSONObject("failure").getJSONArray("flaky.test").getInt(0));
+        assertTrue(retried.getJSONObject("success").has("flaky.test"));
+        assertEquals(2, first.getRequestCount());
+    }
+
+    @Test
+    public void cancelsListsThatAnswerTooSlowly() throws Throwable{
+        DirectRequests.registerEndpoint(endpoint("trickle.test", first).setTimeout(300, TimeUnit.MILLISECONDS).build());
+        DirectRequests.registerEndpoint(endpoint("quick.test", second).setTimeout(300, TimeUnit.MILLISECONDS).build());
+        //every chunk comes before the read timeout, so only the overall limit stops the post
+        char[] padding = new char[400];
+        Arrays.fill(padding, ' ');
+        first.enqueue(new MockResponse().setBody("{}" + new String(padding)).throttleBody(16, 100, TimeUnit.MILLISECONDS));
+        first.enqueue(new MockResponse().setBody("{}"));
+        second.enqueue(new MockResponse().setBody("{}"));
+        BlockAuth auth = new BlockAuth.Builder()
+                .addListAuthToken("trickle.test", "a")
+                .addListAuthToken("quick.test", "b")
+                .build();
+
+        long start = System.nanoTime();
+        JSONObject response = DirectRequests.postCounts(BotBlockRequests.guildData(6L, 10), auth);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("Took " + millis + "ms", millis < 300 + DirectRequests.TIMEOUT_MARGIN_MILLIS + 500);
+        assertEquals(0, response.getJSONObject("failure").getJSONArray("trickle.test").getInt(0));
+        assertTrue(response.getJSONObject("success").has("quick.test"));
+        //the cancelled post gave its rate limit slot back
+        JSONObject retried = DirectRequests.postCounts(BotBlockRequests.guildData(6L, 10),
+                new BlockAuth.Builder().addListAuthToken("trickle.test", "a").build());
+        assertTrue(retried.getJSONObject("success").has("trickle.test"));
+    }
+
+    @Test
+    public void allowsPostsSlightlyBeforeTheRateLimitIsOver(){
+        ListEndpoint endpoint = endpoint("jitter.test", first).build();
+        long start = 1_000_000;
+
+        assertEquals(start, endpoint.tryAcquire("7", start));
+        assertEquals(-1, endpoint.tryAcquire("7", start + 30_000));
+        long early = start + 60_000 - ListEndpoint.RATE_LIMIT_TOLERANCE_MILLIS / 2;
+        assertEquals(early, endpoint.tryAcquire("7", early));
+    }
+}
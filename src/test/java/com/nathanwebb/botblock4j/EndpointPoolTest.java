@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class EndpointPoolTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final EndpointPool pool = new EndpointPool(Arrays.asList("https://first.test/api", "https://second.test/api/"), now::get);
+
+    private static String first(List<EndpointPool.Endpoint> ranked){
+        return ranked.get(0).getBaseURL();
+    }
+
+    @Test
+    public void keepsTheConfiguredOrderWhileUnmeasured(){
+        assertEquals("https://first.test/api/", first(pool.ranked()));
+    }
+
+    @Test
+    public void prefersTheLowerLatency(){
+        List<EndpointPool.Endpoint> ranked = pool.ranked();
+        ranked.get(0).recordSuccess(TimeUnit.MILLISECONDS.toNanos(300));
+        ranked.get(1).recordSuccess(TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertEquals("https://second.test/api/", first(pool.ranked()));
+    }
+
+    @Test
+    public void errorsDecayOverTime(){
+        List<EndpointPool.Endpoint> ranked = pool.ranked();
+        ranked.get(0).recordSuccess(TimeUnit.MILLISECONDS.toNanos(50));
+        ranked.get(1).recordSuccess(TimeUnit.MILLISECONDS.toNanos(300));
+        ranked.get(0).recordFailure();
+
+        assertEquals("https://second.test/api/", first(pool.ranked()));
+
+        //after a few half-lives the faster endpoint is used again
+        now.addAndGet(10 * EndpointPool.ERROR_HALF_LIFE_MILLIS);
+        assertEquals("https://first.test/api/", first(pool.ranked()));
+    }
+
+    @Test
+    public void triesASlowerEndpointAgainOnceItsLatencyIsStale(){
+        List<EndpointPool.Endpoint> ranked = pool.ranked();
+        ranked.get(0).recordSuccess(TimeUnit.MILLISECONDS.toNanos(300));
+        ranked.get(1).recordSuccess(TimeUnit.MILLISECONDS.toNanos(250));
+        assertEquals("https://second.test/api/", first(pool.ranked()));
+
+        //only the used endpoint gets new samples
+        for(int i = 0; i < 6; i++){
+            now.addAndGet(TimeUnit.MINUTES.toMillis(10));
+            pool.ranked().get(0).recordSuccess(TimeUnit.MILLISECONDS.toNanos(250));
+        }
+        assertEquals("https://first.test/api/", first(pool.ranked()));
+
+        //it recovered, so it stays first
+        pool.ranked().get(0).recordSuccess(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals("https://first.test/api/", first(pool.ranked()));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GzipRequestInterceptorTest {
+    private static final String BODY = "{\"shards\":[1000,1000,1000,1000,1000,1000,1000,1000,1000,1000]}";
+
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception{
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient.Builder().addInterceptor(new GzipRequestInterceptor(10)).build();
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        server.shutdown();
+        BotBlockRequests.setGzipThreshold(0);
+    }
+
+    private Response post(String body) throws Exception{
+        return client.newCall(new Request.Builder().url(server.url("/api/count")).post(RequestBody.create(null, body)).build()).execute();
+    }
+
+    @Test
+    public void gzipsBodiesAboveTheThreshold() throws Exception{
+        server.enqueue(new MockResponse().setBody("ok"));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        post(BODY).close();
+        post("{}").close();
+
+        RecordedRequest gzipped = server.takeRequest();
+        assertEquals("gzip", gzipped.getHeader("Content-Encoding"));
+        assertEquals(BODY, Okio.buffer(new GzipSource(gzipped.getBody())).readUtf8());
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void resendsUncompressedWhenTheServerFailsToParse() throws Exception{
+        server.enqueue(new MockResponse().setResponseCode(400).setBody("Bad Request"));
+        server.enqueue(new MockResponse().setBody("ok"));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        try(Response response = post(BODY)) {
+            assertEquals(200, response.code());
+        }
+        post(BODY).close();
+
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"));
+        RecordedRequest retried = server.takeRequest();
+        assertNull(retried.getHeader("Content-Encoding"));
+        assertEquals(BODY, retried.getBody().readUtf8());
+        //the host is remembered, so the next request isn't gzipped
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void stopsGzipWhenTheServerDoesNotSupportIt() throws Exception{
+        server.enqueue(new MockResponse().setResponseCode(415).setBody("Unsupported Media Type"));
+        server.enqueue(new MockResponse().setBody("ok"));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        try(Response response = post(BODY)) {
+            assertEquals(200, response.code());
+        }
+        post(BODY).close();
+
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"));
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void keepsGzipWhenTheRequestItselfIsInvalid() throws Exception{
+        server.enqueue(new MockResponse().setResponseCode(400).setBody("Bad Request"));
+        server.enqueue(new MockResponse().setResponseCode(400).setBody("server_count is missing"));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        try(Response response = post(BODY)) {
+            assertEquals(400, response.code());
+            assertEquals("server_count is missing", response.body().string());
+        }
+        post(BODY).close();
+
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"));
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void directPostsAreNotGzipped() throws Exception{
+        BotBlockRequests.setGzipThreshold(1);
+        DirectRequests.registerEndpoint(new ListEndpoint.Builder("plain.test", server.url("/bots/").toString() + "{id}")
+                .addField("guilds", "server_count")
+                .build());
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        DirectRequests.postCounts(BotBlockRequests.guildData(1L, 10), new BlockAuth.Builder().addListAuthToken("plain.test", "a").build());
+
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+    }
+}
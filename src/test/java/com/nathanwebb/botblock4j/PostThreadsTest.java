@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PostThreadsTest {
+
+    private static boolean timerRunning(){
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("BotBlock4J-Timer") && thread.isAlive());
+    }
+
+    @Test
+    public void sharesOneTimerUntilTheLastTaskIsCancelled() throws Exception{
+        CountDownLatch ticks = new CountDownLatch(4);
+        ScheduledFuture<?> first = PostThreads.scheduleShared(ticks::countDown, 10, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> second = PostThreads.scheduleShared(ticks::countDown, 10, TimeUnit.MILLISECONDS);
+        assertTrue(ticks.await(5, TimeUnit.SECONDS));
+        assertEquals(1, Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("BotBlock4J-Timer")).count());
+
+        PostThreads.cancelShared(first);
+        assertTrue(first.isCancelled());
+        assertTrue(timerRunning());
+
+        PostThreads.cancelShared(second);
+        for(int i = 0; i < 500 && timerRunning(); i++){
+            Thread.sleep(10);
+        }
+        assertFalse(timerRunning());
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Nathan Webb (nathanwgithub@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+package com.nathanwebb.botblock4j.replay;
+
+import com.nathanwebb.botblock4j.BlockAuth;
+import com.nathanwebb.botblock4j.BotBlockRequests;
+import com.nathanwebb.botblock4j.DirectRequests;
+import com.nathanwebb.botblock4j.ListEndpoint;
+import com.nathanwebb.botblock4j.exceptions.FailedToSendException;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RecordAndReplayTest {
+    private MockWebServer first;
+    private MockWebServer second;
+    private Path file;
+
+    private interface Post {
+        void run() throws Throwable;
+    }
+
+    @Before
+    public void setUp() throws Exception{
+        first = new MockWebServer();
+        second = new MockWebServer();
+        first.start();
+        second.start();
+        file = Files.createTempFile("botblock4j", ".jsonl");
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        first.shutdown();
+        second.shutdown();
+        Files.deleteIfExists(file);
+        BotBlockRequests.setBaseURLs("https://botblock.org/api/");
+    }
+
+    private static String outcome(Post post){
+        try {
+            post.run();
+            return "ok";
+        } catch (FailedToSendException e) {
+            List<String> botLists = new ArrayList<>(e.getBotLists());
+            Collections.sort(botLists);
+            return "FailedToSendException " + botLists;
+        } catch (Throwable t) {
+            return t.getClass().getSimpleName();
+        }
+    }
+
+    private List<String> record(Post post, int times) throws Exception{
+        List<String> outcomes = new ArrayList<>();
+        try(RecordingInterceptor recorder = new RecordingInterceptor(file)) {
+            BotBlockRequests.addInterceptor(recorder);
+            try {
+                for(int i = 0; i < times; i++){
+                    outcomes.add(outcome(post));
+                }
+            } finally {
+                BotBlockRequests.removeInterceptor(recorder);
+            }
+        }
+        return outcomes;
+    }
+
+    private List<String> replay(ReplayServer server, Post post, int times){
+        List<String> outcomes = new ArrayList<>();
+        BotBlockRequests.addInterceptor(server.interceptor());
+        try {
+            for(int i = 0; i < times; i++){
+                outcomes.add(outcome(post));
+            }
+        } finally {
+            BotBlockRequests.removeInterceptor(server.interceptor());
+        }
+        return outcomes;
+    }
+
+    @Test
+    public void replaysRelayResponsesAndFailures() throws Exception{
+        MockWebServer unreachable = new MockWebServer();
+        unreachable.start();
+        String unreachableURL = unreachable.url("/api/").toString();
+        unreachable.shutdown();
+        String[] baseURLs = {unreachableURL, first.url("/api/").toString()};
+        first.enqueue(new MockResponse().setBody("{\"success\":{\"lbots.org\":[200,\"{}\"]},\"failure\":[]}"));
+        first.enqueue(new MockResponse().setBody("{\"success\":[],\"failure\":{\"lbots.org\":[401,\"Unauthorized\"]}}"));
+        first.enqueue(new MockResponse().setResponseCode(429).setBody("{\"ratelimit_ip\":\"127.0.0.1\",\"ratelimit_route\":\"/api/count\","
+                + "\"ratelimit_bot_id\":\"1\",\"retry_after\":120,\"ratelimit_reset\":1}"));
+        BlockAuth auth = new BlockAuth.Builder().addListAuthToken("lbots.org", "secret-token").build();
+        Post post = () -> BotBlockRequests.postGuilds(1L, 10, auth);
+
+        BotBlockRequests.setBaseURLs(baseURLs);
+        List<String> recorded = record(post, 3);
+
+        assertEquals("ok", recorded.get(0));
+        assertTrue(recorded.get(1).startsWith("FailedToSendException"));
+        assertEquals("RateLimitedException", recorded.get(2));
+
+        List<RecordedExchange> exchanges = RecordedExchange.readAll(file);
+        assertEquals(4, exchanges.size());
+        assertEquals(0, exchanges.get(0).getCode());
+        assertNotNull(exchanges.get(0).getError());
+        assertEquals(429, exchanges.get(3).getCode());
+        assertEquals(first.getHostName() + ":" + first.getPort(), exchanges.get(3).getHost());
+        assertFalse(new String(Files.readAllBytes(file), "UTF-8").contains("secret-token"));
+
+        first.shutdown();
+        try(ReplayServer server = new ReplayServer(exchanges)) {
+            BotBlockRequests.setBaseURLs(baseURLs);
+            assertEquals(recorded, replay(server, post, 3));
+            assertEquals(4, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void replaysParallelDirectPostsPerList() throws Exception{
+        DirectRequests.registerEndpoint(new ListEndpoint.Builder("replay-first.test", first.url("/bots/").toString() + "{id}")
+                .addField("guilds", "server_count")
+                .setRateLimit(0, TimeUnit.MILLISECONDS)
+                .build());
+        DirectRequests.registerEndpoint(new ListEndpoint.Builder("replay-second.test", second.url("/bots/").toString() + "{id}")
+                .addField("guilds", "server_count")
+                .setRateLimit(0, TimeUnit.MILLISECONDS)
+                .build());
+        for(int i = 0; i < 2; i++){
+            first.enqueue(new MockResponse().setBody("{}").setHeadersDelay(50, TimeUnit.MILLISECONDS));
+            second.enqueue(new MockResponse().setResponseCode(500).setBody("second failed " + i));
+        }
+        BlockAuth auth = new BlockAuth.Builder()
+                .addListAuthToken("replay-first.test", "a")
+                .addListAuthToken("replay-second.test", "b")
+                .build();
+        Post post = () -> DirectRequests.postGuilds(1L, 10, auth);
+
+        List<String> recorded = record(post, 2);
+        assertTrue(recorded.get(0).contains("second failed 0"));
+        assertTrue(recorded.get(1).contains("second failed 1"));
+
+        first.shutdown();
+        second.shutdown();
+        try(ReplayServer server = new ReplayServer(RecordedExchange.readAll(file))) {
+            List<String> replayed = replay(server, post, 4);
+            assertEquals(recorded, replayed.subList(0, 2));
+            //after the last recorded exchange of a list it starts over
+            assertEquals(recorded, replayed.subList(2, 4));
+        }
+    }
+
+    @Test
+    public void replaysResponsesWhoseBodyBrokeOff() throws Exception{
+        first.enqueue(new MockResponse().setBody("{\"success\":{\"lbots.org\":[200,\"{}\"]},\"failure\":[]}")
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        BlockAuth auth = new BlockAuth.Builder().addListAuthToken("lbots.org", "token").build();
+        Post post = () -> BotBlockRequests.postGuilds(1L, 10, auth);
+
+        BotBlockRequests.setBaseURLs(first.url("/api/").toString());
+        List<String> recorded = record(post, 1);
+
+        List<RecordedExchange> exchanges = RecordedExchange.readAll(file);
+        assertEquals(200, exchanges.get(0).getCode());
+        assertNotNull(exchanges.get(0).getError());
+
+        first.shutdown();
+        try(ReplayServer server = new ReplayServer(exchanges)) {
+            assertEquals(recorded, replay(server, post, 1));
+        }
+    }
+
+    @Test
+    public void brokenRecordingsDoNotFailPosts() throws Exception{
+        Path full = Paths.get("/dev/full");
+        Assume.assumeTrue(Files.isWritable(full));
+        first.enqueue(new MockResponse().setBody("{\"success\":{\"lbots.org\":[200,\"{}\"]},\"failure\":[]}"));
+        first.enqueue(new MockResponse().setBody("{\"success\":{\"lbots.org\":[200,\"{}\"]},\"failure\":[]}"));
+        BlockAuth auth = new BlockAuth.Builder().addListAuthToken("lbots.org", "token").build();
+
+        BotBlockRequests.setBaseURLs(first.url("/api/").toString());
+        try(RecordingInterceptor recorder = new RecordingInterceptor(full)) {
+            BotBlockRequests.addInterceptor(recorder);
+            try {
+                //the first write fails and stops the recording, neither post notices
+                assertEquals("ok", outcome(() -> BotBlockRequests.postGuilds(1L, 10, auth)));
+                assertEquals("ok", outcome(() -> BotBlockRequests.postGuilds(1L, 10, auth)));
+            } finally {
+                BotBlockRequests.removeInterceptor(recorder);
+            }
+        } catch (IOException ignored) {
+            //closing the already broken file again may fail as well
+        }
+        assertEquals(2, first.getRequestCount());
+    }
+}